@@ -0,0 +1,104 @@
+package com.toofifty.xpmeter;
+
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time and Java2D draw calls per chart frame, with a dozen skills on a
+ * wide chart. Full frames redraw every layer (the chart is resized each
+ * frame); cached frames are the usual case, where the layers are reused.
+ * Run with ./gradlew jmh -Pjmh.includes=RenderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark
+{
+	private static final int SESSION_HOURS = 2;
+	private static final int SKILLS = 12;
+	private static final int WIDTH = 600;
+	private static final int HEIGHT = 120;
+	private static final int SPAN = 3600;
+
+	private final XPChart chart = new XPChart();
+	private final BufferedImage image = new BufferedImage(WIDTH * 2, HEIGHT * 2, BufferedImage.TYPE_INT_RGB);
+	private final Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 11);
+	private int frame = 0;
+
+	/**
+	 * Draw calls made by the last frame - frames drawn the same way
+	 * make the same calls, so it stands for the whole iteration
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class DrawCalls
+	{
+		public long drawCalls;
+	}
+
+	@Setup
+	public void setUp()
+	{
+		final var tracker = XPTrackerBenchmark.createTracker(new XPMeterConfig()
+		{
+			@Override
+			public int span()
+			{
+				return SPAN;
+			}
+		});
+		XPTrackerBenchmark.simulate(tracker, SESSION_HOURS, SKILLS);
+
+		chart.setPreferredLocation(new Point(0, 0));
+		chart.setPreferredSize(new Dimension(WIDTH, HEIGHT));
+		chart.setSpan(Util.secondsToTicks(SPAN));
+		chart.setShowSkillIcons(false);
+
+		final var snapshot = new XPTracker.Snapshot();
+		tracker.snapshot(snapshot, WIDTH);
+		tracker.getAggregate(snapshot, chart.getAggregates().getBack());
+		chart.getAggregates().publish();
+	}
+
+	@Benchmark
+	public BufferedImage fullFrame(DrawCalls counters)
+	{
+		chart.setPreferredSize(new Dimension(WIDTH + frame++ % 2, HEIGHT));
+		return render(counters);
+	}
+
+	@Benchmark
+	public BufferedImage cachedFrame(DrawCalls counters)
+	{
+		return render(counters);
+	}
+
+	private BufferedImage render(DrawCalls counters)
+	{
+		final var graphics = image.createGraphics();
+		graphics.setFont(font);
+		chart.hasData();
+		chart.render(graphics);
+		graphics.dispose();
+
+		counters.drawCalls = chart.getDrawCalls();
+		return image;
+	}
+}
@@ -0,0 +1,76 @@
+package com.toofifty.xpmeter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How exporting and restoring sessions scales with session length
+ * and the number of active skills. Run with ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionExportBenchmark
+{
+	@Param({"1", "8", "24"})
+	public int sessionHours;
+
+	@Param({"1", "8"})
+	public int activeSkills;
+
+	private XPTracker tracker;
+	private XPTracker target;
+	private byte[] encoded;
+	private String exported;
+
+	@Setup
+	public void setUp()
+	{
+		tracker = XPTrackerBenchmark.createTracker(new XPMeterConfig() {});
+		XPTrackerBenchmark.simulate(tracker, sessionHours, activeSkills);
+		target = XPTrackerBenchmark.createTracker(new XPMeterConfig() {});
+
+		encoded = tracker.encode();
+		exported = tracker.export();
+	}
+
+	@Benchmark
+	public byte[] encode()
+	{
+		return tracker.encode();
+	}
+
+	@Benchmark
+	public String export()
+	{
+		return tracker.export();
+	}
+
+	@Benchmark
+	public XPTracker restoreBinary() throws IOException
+	{
+		target.restore(encoded);
+		return target;
+	}
+
+	@Benchmark
+	public XPTracker restoreExport() throws IOException
+	{
+		target.restore(exported);
+		return target;
+	}
+}
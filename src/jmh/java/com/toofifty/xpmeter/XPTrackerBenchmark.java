@@ -0,0 +1,195 @@
+package com.toofifty.xpmeter;
+
+import com.google.inject.Guice;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.runelite.api.Skill;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How the tracker's compute paths scale with the session and chart settings.
+ * Cold runs start each aggregate from a new cache, and compute every rate and
+ * history without one. Warm runs read rates back from an already filled cache.
+ * Aggregates move the session along one update each, as the plugin would, so
+ * warm runs compute the newest points - the session is rebuilt each iteration.
+ *
+ * Run with ./gradlew jmh, narrowing parameters with e.g. -Pjmh.includes=aggregate
+ * or by editing the @Param lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XPTrackerBenchmark
+{
+	static final int ONE_HOUR = 6000;
+	static final int MAX_PIXELS = 600;
+
+	@Param({"1", "24"})
+	public int sessionHours;
+
+	@Param({"1", "8"})
+	public int activeSkills;
+
+	@Param({"180", "43200"})
+	public int span;
+
+	@Param({"1", "5"})
+	public int resolution;
+
+	@Param({"SLIDING_WINDOW", "CUMULATIVE"})
+	public TrackingMode trackingMode;
+
+	@Param({"true", "false"})
+	public boolean coldCache;
+
+	private XPMeterConfig config;
+	private XPTracker tracker;
+	private final XPTracker.Snapshot snapshot = new XPTracker.Snapshot();
+	private final XPTracker.Aggregate aggregate = new XPTracker.Aggregate();
+	private final Series history = new Series();
+	private RateCache cache;
+	private Simulation simulation;
+	private int updateTicks;
+
+	@Setup(Level.Iteration)
+	public void setUp()
+	{
+		config = new XPMeterConfig()
+		{
+			@Override
+			public int span()
+			{
+				return span;
+			}
+
+			@Override
+			public int resolution()
+			{
+				return resolution;
+			}
+
+			@Override
+			public TrackingMode trackingMode()
+			{
+				return trackingMode;
+			}
+
+			@Override
+			public boolean parallelAggregation()
+			{
+				return false;
+			}
+		};
+		tracker = createTracker(config);
+		simulation = new Simulation(tracker, activeSkills);
+		simulation.advance(sessionHours * ONE_HOUR);
+		updateTicks = Util.secondsToTicks(resolution);
+
+		tracker.snapshot(snapshot, MAX_PIXELS);
+		cache = new RateCache(config.cacheSize());
+
+		// fill the caches, for warm runs
+		tracker.getAggregate(snapshot, aggregate);
+		tracker.getHistory(snapshot, cache, Skill.ATTACK, resolution, history);
+	}
+
+	@Benchmark
+	public XPTracker.Aggregate aggregate()
+	{
+		if (coldCache)
+		{
+			tracker.clearCache();
+		}
+
+		simulation.advance(updateTicks);
+		tracker.snapshot(snapshot, MAX_PIXELS);
+		tracker.getAggregate(snapshot, aggregate);
+		return aggregate;
+	}
+
+	@Benchmark
+	public Series history()
+	{
+		tracker.getHistory(snapshot, coldCache ? null : cache, Skill.ATTACK, resolution, history);
+		return history;
+	}
+
+	@Benchmark
+	public int rate()
+	{
+		return tracker.getXPPerHourAt(
+			snapshot,
+			coldCache ? null : cache,
+			Skill.ATTACK,
+			tracker.getCurrentTick() - ONE_HOUR / 2,
+			config.windowInterval(),
+			trackingMode
+		);
+	}
+
+	static XPTracker createTracker(XPMeterConfig config)
+	{
+		final var tracker = Guice.createInjector(binder -> binder.bind(XPMeterConfig.class).toInstance(config))
+			.getInstance(XPTracker.class);
+		tracker.setEnabledSkills(EnumSet.allOf(Skill.class));
+		return tracker;
+	}
+
+	static void simulate(XPTracker tracker, int hours, int activeSkills)
+	{
+		new Simulation(tracker, activeSkills).advance(hours * ONE_HOUR);
+	}
+
+	/**
+	 * Gains a random amount of XP in each active skill on roughly one in four ticks
+	 */
+	static class Simulation
+	{
+		private final Random random = new Random(0);
+		private final Skill[] skills = Skill.values();
+		private final XPTracker tracker;
+		private final int[] xp;
+
+		Simulation(XPTracker tracker, int activeSkills)
+		{
+			this.tracker = tracker;
+			xp = new int[activeSkills];
+
+			for (var i = 0; i < activeSkills; i++)
+			{
+				tracker.track(skills[i], xp[i]);
+			}
+		}
+
+		void advance(int ticks)
+		{
+			for (var tick = 0; tick < ticks; tick++)
+			{
+				for (var i = 0; i < xp.length; i++)
+				{
+					if (random.nextInt(4) == 0)
+					{
+						xp[i] += 1 + random.nextInt(400);
+						tracker.track(skills[i], xp[i]);
+					}
+				}
+				tracker.tick();
+			}
+		}
+	}
+}
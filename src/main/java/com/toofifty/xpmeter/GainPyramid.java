@@ -0,0 +1,109 @@
+package com.toofifty.xpmeter;
+
+import java.util.Arrays;
+
+/**
+ * Coarser resolutions of a skill's gain log, for wide spans.
+ * Each level splits time into fixed width buckets and keeps the
+ * running XP total at the end of every bucket that has passed, so
+ * a windowed sum at that level is two array lookups. The GainStore
+ * itself serves as the finest (1 tick) level.
+ */
+public class GainPyramid
+{
+	/**
+	 * Bucket widths of each level, in ticks (6 seconds, 1 minute, 10 minutes)
+	 */
+	private static final int[] BUCKET_TICKS = {10, 100, 1000};
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final long[][] totals = new long[BUCKET_TICKS.length][INITIAL_CAPACITY];
+	private final int[] sealed = new int[BUCKET_TICKS.length];
+
+	/**
+	 * Point a view at the buckets sealed so far, creating the view
+	 * if null. See {@link GainStore#snapshot(GainStore)}
+	 */
+	public GainPyramid snapshot(GainPyramid view)
+	{
+		if (view == null)
+		{
+			view = new GainPyramid();
+		}
+
+		for (var level = 0; level < BUCKET_TICKS.length; level++)
+		{
+			view.totals[level] = totals[level];
+			view.sealed[level] = sealed[level];
+		}
+
+		return view;
+	}
+
+	/**
+	 * Record totals for every bucket that ended before the current tick.
+	 * Gains are only ever added at the current tick, so a bucket that
+	 * has ended can no longer change.
+	 */
+	public void seal(GainStore gains, int currentTick)
+	{
+		for (var level = 0; level < BUCKET_TICKS.length; level++)
+		{
+			final var bucketTicks = BUCKET_TICKS[level];
+			while ((sealed[level] + 1) * bucketTicks <= currentTick)
+			{
+				if (sealed[level] == totals[level].length)
+				{
+					totals[level] = Arrays.copyOf(totals[level], sealed[level] * 2);
+				}
+
+				final var bucketEnd = (sealed[level] + 1) * bucketTicks - 1;
+				totals[level][sealed[level]++] = gains.totalAt(bucketEnd);
+			}
+		}
+	}
+
+	/**
+	 * Coarsest level with buckets no wider than the given number of ticks
+	 * that evenly divide the window, or -1 if only the raw gains will do.
+	 * Windows read from such a level are snapped back to bucket boundaries
+	 * at both ends, so they still cover exactly the window's ticks.
+	 */
+	public static int getLevel(int maxBucketTicks, int windowTicks)
+	{
+		for (var level = BUCKET_TICKS.length - 1; level >= 0; level--)
+		{
+			if (BUCKET_TICKS[level] <= maxBucketTicks && windowTicks % BUCKET_TICKS[level] == 0)
+			{
+				return level;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Bytes allocated for the bucket totals of every level
+	 */
+	public long getByteSize()
+	{
+		var bytes = 0L;
+		for (var level : totals)
+		{
+			bytes += (long) level.length * Long.BYTES;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Total XP gained up to the end of the last bucket finishing
+	 * at or before the tick. Only valid for ticks before the
+	 * current tick, as later buckets are not yet sealed.
+	 */
+	public long totalAt(int level, int tick)
+	{
+		final var bucket = (tick + 1) / BUCKET_TICKS[level] - 1;
+		return bucket < 0 ? 0 : totals[level][bucket];
+	}
+}
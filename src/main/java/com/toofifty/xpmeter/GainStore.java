@@ -0,0 +1,296 @@
+package com.toofifty.xpmeter;
+
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Columnar log of a skill's XP gains, sorted by tick.
+ * Gains are kept in primitive arrays rather than as one object
+ * each, alongside the running XP total at each gain, so any
+ * windowed or cumulative sum is a binary search (or two) and
+ * a subtraction, regardless of session length.
+ */
+public class GainStore
+{
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Bytes per gain in the ticks, xp and totals columns
+	 */
+	private static final int GAIN_BYTES = 4 + 4 + 8;
+
+	/**
+	 * Estimated bytes per gain when stored as an XPGain object
+	 * in an ArrayList (12 byte header + 2 ints, padded to 24,
+	 * plus a 4 byte compressed reference)
+	 */
+	public static final int BOXED_GAIN_BYTES = 24 + 4;
+
+	private int[] ticks = new int[INITIAL_CAPACITY];
+	private int[] xp = new int[INITIAL_CAPACITY];
+	private long[] totals = new long[INITIAL_CAPACITY];
+	private int size = 0;
+
+	/**
+	 * Point a view at the gains logged so far, creating the view if null.
+	 * Later gains are written past the end of the view, or into new arrays
+	 * once the columns grow, so the view never changes and is safe to read
+	 * from another thread. Nothing should be added to the view itself.
+	 */
+	public GainStore snapshot(GainStore view)
+	{
+		if (view == null)
+		{
+			view = new GainStore();
+		}
+
+		view.ticks = ticks;
+		view.xp = xp;
+		view.totals = totals;
+		view.size = size;
+		return view;
+	}
+
+	/**
+	 * Append a gain. Ticks must be added in non-decreasing order,
+	 * which holds as the tracker's current tick only moves forward
+	 */
+	public void add(int tick, int gain)
+	{
+		if (size == ticks.length)
+		{
+			ticks = Arrays.copyOf(ticks, size * 2);
+			xp = Arrays.copyOf(xp, size * 2);
+			totals = Arrays.copyOf(totals, size * 2);
+		}
+
+		ticks[size] = tick;
+		xp[size] = gain;
+		totals[size] = (size == 0 ? 0 : totals[size - 1]) + gain;
+		size++;
+	}
+
+	/**
+	 * Merge gains before the tick into one gain per bucket of the given
+	 * width, placed at the tick of the bucket's last gain. Totals at bucket
+	 * boundaries and at or after the tick are unchanged, so cumulative
+	 * rates stay exact.
+	 *
+	 * The result is a new store, leaving this one (and any views of it)
+	 * untouched, or this store if nothing would be merged.
+	 */
+	public GainStore compact(int beforeTick, int bucketTicks)
+	{
+		// only merge whole buckets, so later gains never need merging into an earlier one
+		final var end = firstAfter(Math.floorDiv(beforeTick, bucketTicks) * bucketTicks - 1);
+
+		var buckets = 0;
+		for (var i = 0; i < end; i++)
+		{
+			if (i == 0 || ticks[i] / bucketTicks != ticks[i - 1] / bucketTicks)
+			{
+				buckets++;
+			}
+		}
+
+		if (buckets == end)
+		{
+			return this;
+		}
+
+		final var compacted = new GainStore();
+		final var capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(buckets + size - end) << 1);
+		compacted.ticks = new int[capacity];
+		compacted.xp = new int[capacity];
+		compacted.totals = new long[capacity];
+
+		for (var i = 0; i < end; i++)
+		{
+			if (i + 1 == end || ticks[i] / bucketTicks != ticks[i + 1] / bucketTicks)
+			{
+				compacted.append(ticks[i], totals[i]);
+			}
+		}
+
+		for (var i = end; i < size; i++)
+		{
+			compacted.append(ticks[i], totals[i]);
+		}
+
+		return compacted;
+	}
+
+	/**
+	 * Bring a compacted copy of a store up to date with the gains added to
+	 * the store since the copy was made, given the store's size at the time
+	 */
+	public void addSince(GainStore store, int fromIndex)
+	{
+		for (var i = fromIndex; i < store.size; i++)
+		{
+			add(store.ticks[i], store.xp[i]);
+		}
+	}
+
+	/**
+	 * Append a gain by its running total, for rebuilding a store
+	 * with enough capacity already allocated
+	 */
+	private void append(int tick, long total)
+	{
+		ticks[size] = tick;
+		totals[size] = total;
+		xp[size] = (int) (total - (size == 0 ? 0 : totals[size - 1]));
+		size++;
+	}
+
+	public int getTick(int index)
+	{
+		return ticks[index];
+	}
+
+	public int getXp(int index)
+	{
+		return xp[index];
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Total XP gained at or before the tick. From the last gain onwards
+	 * (e.g. the current cumulative rate) this is just the running total,
+	 * otherwise it's a binary search for the total at that tick.
+	 */
+	public long totalAt(int tick)
+	{
+		if (size == 0)
+		{
+			return 0;
+		}
+
+		if (ticks[size - 1] <= tick)
+		{
+			return totals[size - 1];
+		}
+
+		final var index = firstAfter(tick);
+		return index == 0 ? 0 : totals[index - 1];
+	}
+
+	/**
+	 * Total XP gained so far, kept up to date as gains are added
+	 */
+	public long getTotal()
+	{
+		return size == 0 ? 0 : totals[size - 1];
+	}
+
+	/**
+	 * Total XP gained after the start tick, up to and including
+	 * the end tick
+	 */
+	public long totalBetween(int startTick, int endTick)
+	{
+		return totalAt(endTick) - totalAt(startTick);
+	}
+
+	/**
+	 * Bytes allocated for the columns, including spare capacity
+	 */
+	public long getByteSize()
+	{
+		return (long) ticks.length * GAIN_BYTES;
+	}
+
+	/**
+	 * Index of the first gain after the tick
+	 */
+	public int firstAfter(int tick)
+	{
+		var low = 0;
+		var high = size;
+		while (low < high)
+		{
+			final var mid = (low + high) >>> 1;
+			if (ticks[mid] <= tick)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Write as [count][tick delta, xp...], with each tick as
+	 * the number of ticks since the previous gain
+	 */
+	public void write(SessionCodec.Writer writer)
+	{
+		writer.writeVarInt(size);
+
+		var lastTick = 0;
+		for (var i = 0; i < size; i++)
+		{
+			writer.writeVarInt(ticks[i] - lastTick);
+			writer.writeSignedVarInt(xp[i]);
+			lastTick = ticks[i];
+		}
+	}
+
+	public static GainStore read(SessionCodec.Reader reader)
+	{
+		final var store = new GainStore();
+		final var count = reader.readVarInt();
+
+		var tick = 0;
+		for (var i = 0; i < count; i++)
+		{
+			tick += reader.readVarInt();
+			store.add(tick, reader.readSignedVarInt());
+		}
+
+		return store;
+	}
+
+	/**
+	 * Read a legacy JSON array of {"tick", "xp"} objects
+	 */
+	public static GainStore read(JsonReader in) throws IOException
+	{
+		final var store = new GainStore();
+		in.beginArray();
+		while (in.hasNext())
+		{
+			var tick = 0;
+			var gain = 0;
+			in.beginObject();
+			while (in.hasNext())
+			{
+				switch (in.nextName())
+				{
+					case "tick":
+						tick = in.nextInt();
+						break;
+					case "xp":
+						gain = in.nextInt();
+						break;
+					default:
+						in.skipValue();
+				}
+			}
+			in.endObject();
+			store.add(tick, gain);
+		}
+		in.endArray();
+		return store;
+	}
+}
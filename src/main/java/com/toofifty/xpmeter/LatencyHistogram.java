@@ -0,0 +1,114 @@
+package com.toofifty.xpmeter;
+
+/**
+ * Latencies of the last N samples, in nanoseconds.
+ * Samples are counted in log-linear buckets - 8 per power of two, so
+ * any percentile is within 12.5% - and the oldest sample's bucket is
+ * decremented as it leaves the window. Recording is a few array writes,
+ * and percentiles are a walk over the bucket counts. Not thread safe.
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+	private final int[] counts = new int[BUCKETS];
+	private final long[] samples;
+	private int next = 0;
+	private int size = 0;
+
+	public LatencyHistogram(int window)
+	{
+		samples = new long[window];
+	}
+
+	public void record(long nanos)
+	{
+		nanos = Math.max(nanos, 0);
+
+		if (size == samples.length)
+		{
+			counts[bucket(samples[next])]--;
+		}
+		else
+		{
+			size++;
+		}
+
+		samples[next] = nanos;
+		counts[bucket(nanos)]++;
+		next = (next + 1) % samples.length;
+	}
+
+	/**
+	 * Number of samples in the window
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Latency that the given fraction (0 - 1) of samples are at or below,
+	 * or 0 if nothing has been recorded
+	 */
+	public long percentile(double fraction)
+	{
+		if (fraction >= 1)
+		{
+			return max();
+		}
+
+		final var target = Math.max((long) Math.ceil(fraction * size), 1);
+		var seen = 0L;
+		for (var bucket = 0; bucket < BUCKETS; bucket++)
+		{
+			seen += counts[bucket];
+			if (seen >= target)
+			{
+				return Math.min(bucketMiddle(bucket), max());
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Exact largest latency in the window
+	 */
+	public long max()
+	{
+		var max = 0L;
+		for (var i = 0; i < size; i++)
+		{
+			max = Math.max(max, samples[i]);
+		}
+		return max;
+	}
+
+	private static int bucket(long nanos)
+	{
+		if (nanos < SUB_BUCKETS)
+		{
+			return (int) nanos;
+		}
+
+		final var exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		final var subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1 << SUB_BUCKET_BITS) + subBucket;
+	}
+
+	private static long bucketMiddle(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+
+		final var exponent = (bucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+		final var width = 1L << (exponent - SUB_BUCKET_BITS);
+		final var start = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << (exponent - SUB_BUCKET_BITS);
+		return start + width / 2;
+	}
+}
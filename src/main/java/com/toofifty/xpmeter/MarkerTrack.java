@@ -0,0 +1,123 @@
+package com.toofifty.xpmeter;
+
+/**
+ * Ticks where something happened in the session - pauses, logouts,
+ * level-ups or bookmarks - each with a value (e.g. the skill that levelled).
+ * Markers are kept sorted by tick in primitive columns, so the markers
+ * within a span are found with a binary search, however long the session.
+ */
+public class MarkerTrack
+{
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int[] ticks = new int[INITIAL_CAPACITY];
+	private int[] values = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	/**
+	 * Point a view at the markers added so far, creating the view if null.
+	 * See {@link GainStore#snapshot(GainStore)} - markers are only appended
+	 * in place, anything else writes new columns, so views never change.
+	 */
+	public MarkerTrack snapshot(MarkerTrack view)
+	{
+		if (view == null)
+		{
+			view = new MarkerTrack();
+		}
+
+		view.ticks = ticks;
+		view.values = values;
+		view.size = size;
+		return view;
+	}
+
+	public void add(int tick)
+	{
+		add(tick, 0);
+	}
+
+	/**
+	 * Add a marker after any others at the same tick. Markers are nearly
+	 * always added at the current tick, which is an append.
+	 */
+	public void add(int tick, int value)
+	{
+		final var index = firstAfter(tick);
+		if (index == size && size < ticks.length)
+		{
+			ticks[size] = tick;
+			values[size] = value;
+			size++;
+			return;
+		}
+
+		final var capacity = size == ticks.length ? size * 2 : ticks.length;
+		final var newTicks = new int[capacity];
+		final var newValues = new int[capacity];
+
+		System.arraycopy(ticks, 0, newTicks, 0, index);
+		System.arraycopy(values, 0, newValues, 0, index);
+		newTicks[index] = tick;
+		newValues[index] = value;
+		System.arraycopy(ticks, index, newTicks, index + 1, size - index);
+		System.arraycopy(values, index, newValues, index + 1, size - index);
+
+		ticks = newTicks;
+		values = newValues;
+		size++;
+	}
+
+	public void addAll(MarkerTrack markers)
+	{
+		for (var i = 0; i < markers.size; i++)
+		{
+			add(markers.ticks[i], markers.values[i]);
+		}
+	}
+
+	public void clear()
+	{
+		ticks = new int[INITIAL_CAPACITY];
+		values = new int[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	public int getTick(int index)
+	{
+		return ticks[index];
+	}
+
+	public int getValue(int index)
+	{
+		return values[index];
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Index of the first marker after the tick
+	 */
+	public int firstAfter(int tick)
+	{
+		var low = 0;
+		var high = size;
+		while (low < high)
+		{
+			final var mid = (low + high) >>> 1;
+			if (ticks[mid] <= tick)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+}
@@ -0,0 +1,100 @@
+package com.toofifty.xpmeter;
+
+/**
+ * Performance of the last N updates, oldest first, for the debug timeline.
+ * Samples are kept in fixed size rings allocated up front, so recording
+ * and drawing them doesn't add to the allocation they're showing.
+ */
+public class PerformanceTimeline
+{
+	private final long[] computeTimes;
+	private final long[] renderTimes;
+	private final int[] cacheSizes;
+	private final int[] hitRatios;
+
+	private int next = 0;
+	private int size = 0;
+
+	public PerformanceTimeline(int capacity)
+	{
+		computeTimes = new long[capacity];
+		renderTimes = new long[capacity];
+		cacheSizes = new int[capacity];
+		hitRatios = new int[capacity];
+	}
+
+	/**
+	 * @param renderTime slowest frame drawn since the previous update
+	 */
+	public void add(long computeTime, long renderTime, int cacheSize, int cacheHits, int cacheMisses)
+	{
+		computeTimes[next] = computeTime;
+		renderTimes[next] = renderTime;
+		cacheSizes[next] = cacheSize;
+		hitRatios[next] = cacheHits + cacheMisses == 0 ? 0 : cacheHits * 100 / (cacheHits + cacheMisses);
+
+		next = (next + 1) % computeTimes.length;
+		size = Math.min(size + 1, computeTimes.length);
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public int capacity()
+	{
+		return computeTimes.length;
+	}
+
+	public long getComputeTime(int index)
+	{
+		return computeTimes[slot(index)];
+	}
+
+	public long getRenderTime(int index)
+	{
+		return renderTimes[slot(index)];
+	}
+
+	public int getCacheSize(int index)
+	{
+		return cacheSizes[slot(index)];
+	}
+
+	/**
+	 * Percentage of rates read from the cache
+	 */
+	public int getHitRatio(int index)
+	{
+		return hitRatios[slot(index)];
+	}
+
+	/**
+	 * Slowest compute or render time in the timeline
+	 */
+	public long getMaxTime()
+	{
+		var max = 0L;
+		for (var i = 0; i < size; i++)
+		{
+			max = Math.max(max, Math.max(computeTimes[i], renderTimes[i]));
+		}
+		return max;
+	}
+
+	public int getMaxCacheSize()
+	{
+		var max = 0;
+		for (var i = 0; i < size; i++)
+		{
+			max = Math.max(max, cacheSizes[i]);
+		}
+		return max;
+	}
+
+	private int slot(int index)
+	{
+		return (next - size + index + computeTimes.length) % computeTimes.length;
+	}
+}
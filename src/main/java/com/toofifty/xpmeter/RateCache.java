@@ -0,0 +1,171 @@
+package com.toofifty.xpmeter;
+
+import java.util.Arrays;
+import lombok.Getter;
+import net.runelite.api.Skill;
+
+/**
+ * Bounded cache of computed XP rates.
+ * Keys pack the whole query into a long, so two different queries
+ * can never share an entry. Entries live in an open-addressing
+ * table with a short probe sequence - once every slot in a key's
+ * probe sequence is taken, the least recently used one is evicted.
+ */
+public class RateCache
+{
+	/**
+	 * Returned by get() when the key is not cached
+	 */
+	public static final long MISSING = Long.MIN_VALUE;
+
+	/**
+	 * Returned by key() when the query can't be packed,
+	 * never stored
+	 */
+	public static final long UNCACHEABLE = 0;
+
+	private static final int MAX_PROBES = 8;
+	private static final int WINDOW_BITS = 25;
+
+	private final long[] keys;
+	private final int[] values;
+	private final int[] lastUsed;
+	private final int mask;
+	private final int shift;
+
+	private int clock = 0;
+	@Getter private int size = 0;
+
+	@Getter private int hits = 0;
+	@Getter private int misses = 0;
+	@Getter private int evictions = 0;
+
+	public RateCache(int capacity)
+	{
+		final var tableSize = tableSize(capacity);
+
+		keys = new long[tableSize];
+		values = new int[tableSize];
+		lastUsed = new int[tableSize];
+		mask = tableSize - 1;
+		shift = 64 - Integer.numberOfTrailingZeros(tableSize);
+	}
+
+	/**
+	 * Pack a rate query into a key, laid out as
+	 * [tracking mode: 1][skill ordinal + 1: 6][window: 25][tick: 32].
+	 * The skill is offset by one so no valid key is ever 0 (an empty slot).
+	 */
+	public static long key(Skill skill, int tick, int windowInterval, TrackingMode trackingMode)
+	{
+		if (windowInterval < 0 || windowInterval >= 1 << WINDOW_BITS)
+		{
+			return UNCACHEABLE;
+		}
+
+		return (long) trackingMode.ordinal() << 63
+			| (long) (skill.ordinal() + 1) << 57
+			| (long) windowInterval << 32
+			| tick & 0xFFFFFFFFL;
+	}
+
+	public long get(long key)
+	{
+		if (key != UNCACHEABLE)
+		{
+			final var home = slot(key);
+			for (var i = 0; i < MAX_PROBES; i++)
+			{
+				final var slot = (home + i) & mask;
+				if (keys[slot] == key)
+				{
+					lastUsed[slot] = ++clock;
+					hits++;
+					return values[slot];
+				}
+
+				if (keys[slot] == UNCACHEABLE)
+				{
+					break;
+				}
+			}
+		}
+
+		misses++;
+		return MISSING;
+	}
+
+	public void put(long key, int value)
+	{
+		if (key == UNCACHEABLE)
+		{
+			return;
+		}
+
+		final var home = slot(key);
+		var victim = home;
+		for (var i = 0; i < MAX_PROBES; i++)
+		{
+			final var slot = (home + i) & mask;
+			if (keys[slot] == key || keys[slot] == UNCACHEABLE)
+			{
+				if (keys[slot] == UNCACHEABLE)
+				{
+					size++;
+				}
+
+				store(slot, key, value);
+				return;
+			}
+
+			// compare ages, rather than stamps, so clock overflow is harmless
+			if (clock - lastUsed[slot] > clock - lastUsed[victim])
+			{
+				victim = slot;
+			}
+		}
+
+		evictions++;
+		store(victim, key, value);
+	}
+
+	public void clear()
+	{
+		Arrays.fill(keys, UNCACHEABLE);
+		size = 0;
+	}
+
+	public int capacity()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * Number of slots allocated for a requested capacity,
+	 * rounded up to a power of two
+	 */
+	public static int tableSize(int capacity)
+	{
+		return Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+	}
+
+	public void resetStats()
+	{
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	private void store(int slot, long key, int value)
+	{
+		keys[slot] = key;
+		values[slot] = value;
+		lastUsed[slot] = ++clock;
+	}
+
+	private int slot(long key)
+	{
+		// fibonacci hashing spreads the packed fields over the table
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+}
@@ -0,0 +1,141 @@
+package com.toofifty.xpmeter;
+
+import java.util.Arrays;
+
+/**
+ * A skill's XP rate history, as parallel tick and rate columns.
+ * Series are filled in place on every update, so once the columns
+ * have grown to fit the chart, no further allocation is needed.
+ */
+public class Series
+{
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int[] ticks = new int[INITIAL_CAPACITY];
+	private int[] rates = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	public void clear()
+	{
+		size = 0;
+	}
+
+	public void add(int tick, int rate)
+	{
+		if (size == ticks.length)
+		{
+			ticks = Arrays.copyOf(ticks, size * 2);
+			rates = Arrays.copyOf(rates, size * 2);
+		}
+
+		ticks[size] = tick;
+		rates[size] = rate;
+		size++;
+	}
+
+	/**
+	 * Drop points before the tick, shifting the rest to the front
+	 */
+	public void removeBefore(int tick)
+	{
+		var first = 0;
+		while (first < size && ticks[first] < tick)
+		{
+			first++;
+		}
+
+		if (first > 0)
+		{
+			System.arraycopy(ticks, first, ticks, 0, size - first);
+			System.arraycopy(rates, first, rates, 0, size - first);
+			size -= first;
+		}
+	}
+
+	/**
+	 * Replace this series' points with a copy of another's
+	 */
+	public void copyFrom(Series other)
+	{
+		if (ticks.length < other.size)
+		{
+			ticks = new int[other.ticks.length];
+			rates = new int[other.rates.length];
+		}
+
+		System.arraycopy(other.ticks, 0, ticks, 0, other.size);
+		System.arraycopy(other.rates, 0, rates, 0, other.size);
+		size = other.size;
+	}
+
+	public int getTick(int index)
+	{
+		return ticks[index];
+	}
+
+	public int getRate(int index)
+	{
+		return rates[index];
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Index of the point nearest the tick, the earlier of two equally
+	 * near, or -1 if the series is empty
+	 */
+	public int closestIndex(int tick)
+	{
+		var low = 0;
+		var high = size;
+		while (low < high)
+		{
+			final var mid = (low + high) >>> 1;
+			if (ticks[mid] < tick)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+
+		// low is now the first point at or after the tick
+		if (low == size)
+		{
+			return size - 1;
+		}
+
+		if (low > 0 && tick - ticks[low - 1] <= ticks[low] - tick)
+		{
+			return low - 1;
+		}
+
+		return low;
+	}
+
+	/**
+	 * Most recent tick, or -1 if the series is empty
+	 */
+	public int getLastTick()
+	{
+		return size == 0 ? -1 : ticks[size - 1];
+	}
+
+	/**
+	 * Most recent rate, or 0 if the series is empty
+	 */
+	public int getLastRate()
+	{
+		return size == 0 ? 0 : rates[size - 1];
+	}
+}
@@ -0,0 +1,213 @@
+package com.toofifty.xpmeter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import lombok.Getter;
+
+/**
+ * Binary encoding of session data. Values are written as varints, so
+ * small numbers (like the ticks between gains, or most XP drops) take
+ * a single byte. Layouts are written by the classes that own the data -
+ * this only handles the header and the primitive values.
+ */
+public class SessionCodec
+{
+	private static final byte[] MAGIC = {'X', 'P', 'M'};
+
+	/**
+	 * Version 2 writes skills by name rather than by ordinal
+	 */
+	public static final int VERSION = 2;
+
+	/**
+	 * Whether the data starts with the binary format's header,
+	 * rather than being a legacy JSON export
+	 */
+	public static boolean isEncoded(byte[] data)
+	{
+		return data.length >= MAGIC.length
+			&& Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+	}
+
+	/**
+	 * Deflate encoded data, for the config field. XP drops repeat a lot,
+	 * which varints alone can't take advantage of.
+	 */
+	public static byte[] compress(byte[] data)
+	{
+		final var out = new ByteArrayOutputStream(data.length / 2);
+		try (var deflater = new DeflaterOutputStream(out))
+		{
+			deflater.write(data);
+		}
+		catch (IOException e)
+		{
+			// nothing to fail writing to memory
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	public static byte[] decompress(byte[] data) throws IOException
+	{
+		try (var inflater = new InflaterInputStream(new ByteArrayInputStream(data)))
+		{
+			return inflater.readAllBytes();
+		}
+	}
+
+	public static class Writer
+	{
+		private byte[] bytes = new byte[256];
+		private int size = 0;
+
+		public Writer()
+		{
+			for (var b : MAGIC)
+			{
+				writeByte(b);
+			}
+			writeVarInt(VERSION);
+		}
+
+		public void writeByte(int value)
+		{
+			if (size == bytes.length)
+			{
+				bytes = Arrays.copyOf(bytes, size * 2);
+			}
+
+			bytes[size++] = (byte) value;
+		}
+
+		/**
+		 * Write an int 7 bits at a time, lowest first, with the top
+		 * bit of each byte set if more follow. Negative values take
+		 * 5 bytes, see {@link #writeSignedVarInt(int)}
+		 */
+		public void writeVarInt(int value)
+		{
+			while ((value & ~0x7F) != 0)
+			{
+				writeByte(value & 0x7F | 0x80);
+				value >>>= 7;
+			}
+
+			writeByte(value);
+		}
+
+		/**
+		 * Zigzag encode a value that may be negative, so small
+		 * negative values stay short
+		 */
+		public void writeSignedVarInt(int value)
+		{
+			writeVarInt(value << 1 ^ value >> 31);
+		}
+
+		/**
+		 * Write a string as its UTF-8 length, then its bytes
+		 */
+		public void writeString(String value)
+		{
+			final var utf8 = value.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(utf8.length);
+			for (var b : utf8)
+			{
+				writeByte(b);
+			}
+		}
+
+		public byte[] toByteArray()
+		{
+			return Arrays.copyOf(bytes, size);
+		}
+	}
+
+	public static class Reader
+	{
+		private final byte[] bytes;
+		private int position;
+
+		/**
+		 * Version the data was written with, for reading older layouts
+		 */
+		@Getter private final int version;
+
+		public Reader(byte[] bytes)
+		{
+			if (!isEncoded(bytes))
+			{
+				throw new IllegalArgumentException("Not XP Meter session data");
+			}
+
+			this.bytes = bytes;
+			this.position = MAGIC.length;
+
+			version = readVarInt();
+			if (version > VERSION)
+			{
+				throw new IllegalArgumentException("Session data is from a newer version (" + version + ")");
+			}
+		}
+
+		/**
+		 * Whether there's anything left to read, for optional
+		 * sections at the end of the data
+		 */
+		public boolean hasRemaining()
+		{
+			return position < bytes.length;
+		}
+
+		public int readByte()
+		{
+			if (position == bytes.length)
+			{
+				throw new IllegalArgumentException("Session data is truncated");
+			}
+
+			return bytes[position++] & 0xFF;
+		}
+
+		public int readVarInt()
+		{
+			var value = 0;
+			for (var shift = 0; shift < 35; shift += 7)
+			{
+				final var b = readByte();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+				{
+					return value;
+				}
+			}
+
+			throw new IllegalArgumentException("Malformed varint in session data");
+		}
+
+		public int readSignedVarInt()
+		{
+			final var value = readVarInt();
+			return value >>> 1 ^ -(value & 1);
+		}
+
+		public String readString()
+		{
+			final var length = readVarInt();
+			if (length < 0 || length > bytes.length - position)
+			{
+				throw new IllegalArgumentException("Session data is truncated");
+			}
+
+			final var value = new String(bytes, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return value;
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package com.toofifty.xpmeter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import lombok.Getter;
+import net.runelite.api.Skill;
+
+/**
+ * Append-only log of everything that changes the tracker, so a session
+ * survives the client crashing. Records are written into a memory-mapped
+ * file, which the OS flushes even if the client dies. Every so often the
+ * whole session is written out as a checkpoint, and the journal starts over.
+ *
+ * Checkpoints and the journal are both tagged with a generation - a journal
+ * only applies on top of the checkpoint from the same generation. Checkpoints
+ * are written while records are still being appended, so each also notes
+ * how many records it covers, which are dropped from the journal once it's
+ * written - or on recovery, if the client stopped before then.
+ */
+public class SessionJournal implements AutoCloseable
+{
+	public static final int TRACK = 1;
+	public static final int PAUSE = 2;
+	public static final int UNPAUSE = 3;
+	public static final int LOGOUT = 4;
+	public static final int RESET = 5;
+	public static final int BOOKMARK = 6;
+
+	private static final int MAGIC = 0x58504a4e;
+	private static final int VERSION = 1;
+
+	/**
+	 * [magic: 4][version: 4][generation: 8][record count: 4][current tick: 4]
+	 */
+	private static final int HEADER_BYTES = 32;
+	private static final int GENERATION_OFFSET = 8;
+	private static final int COUNT_OFFSET = 16;
+	private static final int TICK_OFFSET = 20;
+
+	/**
+	 * [tick: 4][type: 1][skill ordinal: 1][unused: 2][value: 4]
+	 */
+	private static final int RECORD_BYTES = 12;
+
+	/**
+	 * [magic: 4][generation: 8][records covered: 4]
+	 */
+	private static final int CHECKPOINT_HEADER_BYTES = 16;
+
+	private static final int INITIAL_BYTES = 1 << 20;
+
+	private static final Skill[] SKILLS = Skill.values();
+
+	private static final String JOURNAL_FILE = "session.journal";
+	private static final String CHECKPOINT_FILE = "session.checkpoint";
+
+	private final Path checkpointPath;
+	private final FileChannel channel;
+	private final FileLock lock;
+	private MappedByteBuffer buffer;
+
+	@Getter private long generation;
+	@Getter private int size;
+
+	private SessionJournal(Path directory, FileChannel channel, FileLock lock) throws IOException
+	{
+		this.checkpointPath = directory.resolve(CHECKPOINT_FILE);
+		this.channel = channel;
+		this.lock = lock;
+
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), INITIAL_BYTES));
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+		{
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			buffer.putLong(GENERATION_OFFSET, 0);
+			buffer.putInt(COUNT_OFFSET, 0);
+			buffer.putInt(TICK_OFFSET, 0);
+		}
+
+		generation = buffer.getLong(GENERATION_OFFSET);
+		size = Math.min(buffer.getInt(COUNT_OFFSET), (buffer.capacity() - HEADER_BYTES) / RECORD_BYTES);
+	}
+
+	/**
+	 * Open the journal in the directory, creating it if needed.
+	 * Fails if another client already has it open.
+	 */
+	public static SessionJournal open(Path directory) throws IOException
+	{
+		Files.createDirectories(directory);
+
+		final var channel = FileChannel.open(
+			directory.resolve(JOURNAL_FILE),
+			StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+		);
+
+		final var lock = channel.tryLock();
+		if (lock == null)
+		{
+			channel.close();
+			throw new IOException("Session journal is in use by another client");
+		}
+
+		return new SessionJournal(directory, channel, lock);
+	}
+
+	/**
+	 * Rename the journal and checkpoint in the directory so they're no
+	 * longer read, e.g. when they can't be recovered from. They're kept,
+	 * rather than deleted, in case the session is wanted back.
+	 */
+	public static void moveAside(Path directory) throws IOException
+	{
+		for (var name : new String[]{JOURNAL_FILE, CHECKPOINT_FILE})
+		{
+			final var path = directory.resolve(name);
+			if (Files.exists(path))
+			{
+				Files.move(path, directory.resolve(name + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	public void track(int tick, Skill skill, int xp)
+	{
+		append(tick, TRACK, skill.ordinal(), xp);
+	}
+
+	public void append(int tick, int type)
+	{
+		append(tick, type, 0, 0);
+	}
+
+	/**
+	 * Only the record count is written after the record itself,
+	 * so a partially written record is never replayed
+	 */
+	private void append(int tick, int type, int skill, int value)
+	{
+		final var offset = HEADER_BYTES + size * RECORD_BYTES;
+		if (offset + RECORD_BYTES > buffer.capacity())
+		{
+			grow();
+		}
+
+		buffer.putInt(offset, tick);
+		buffer.put(offset + 4, (byte) type);
+		buffer.put(offset + 5, (byte) skill);
+		buffer.putInt(offset + 8, value);
+		buffer.putInt(COUNT_OFFSET, ++size);
+	}
+
+	/**
+	 * Note the current tick, so time passed since the last record
+	 * isn't lost
+	 */
+	public void tick(int tick)
+	{
+		buffer.putInt(TICK_OFFSET, tick);
+	}
+
+	public int getCurrentTick()
+	{
+		return buffer.getInt(TICK_OFFSET);
+	}
+
+	public int getTick(int index)
+	{
+		return buffer.getInt(HEADER_BYTES + index * RECORD_BYTES);
+	}
+
+	public int getType(int index)
+	{
+		return buffer.get(HEADER_BYTES + index * RECORD_BYTES + 4);
+	}
+
+	/**
+	 * Skill of a track record. Records only last until the next checkpoint,
+	 * so are written by ordinal - one that doesn't match a skill is
+	 * rejected rather than read as the wrong skill.
+	 */
+	public Skill getSkill(int index)
+	{
+		final var ordinal = buffer.get(HEADER_BYTES + index * RECORD_BYTES + 5) & 0xFF;
+		if (ordinal >= SKILLS.length)
+		{
+			throw new IllegalArgumentException("Unknown skill in session journal: " + ordinal);
+		}
+
+		return SKILLS[ordinal];
+	}
+
+	public int getValue(int index)
+	{
+		return buffer.getInt(HEADER_BYTES + index * RECORD_BYTES + 8);
+	}
+
+	/**
+	 * Session data from the checkpoint this journal applies on top of,
+	 * or null if there is none
+	 */
+	public byte[] readCheckpoint() throws IOException
+	{
+		if (!Files.exists(checkpointPath))
+		{
+			return null;
+		}
+
+		final var bytes = ByteBuffer.wrap(Files.readAllBytes(checkpointPath));
+		if (bytes.remaining() < CHECKPOINT_HEADER_BYTES || bytes.getInt() != MAGIC)
+		{
+			return null;
+		}
+
+		final var checkpointGeneration = bytes.getLong();
+		final var records = bytes.getInt();
+		if (checkpointGeneration == generation + 1)
+		{
+			// the checkpoint was written, but the client stopped
+			// before the records it covers were dropped
+			applyCheckpoint(Math.min(records, size));
+		}
+		else if (checkpointGeneration != generation)
+		{
+			// this journal started before the checkpoint was
+			// written, so is already included in it
+			clear(checkpointGeneration);
+		}
+
+		return Arrays.copyOfRange(bytes.array(), bytes.position(), bytes.limit());
+	}
+
+	/**
+	 * Replace the checkpoint with the whole session, as of the given
+	 * number of records into the journal. Only touches the checkpoint file,
+	 * so is safe to call from another thread while records are appended.
+	 * Once it's written, {@link #applyCheckpoint} moves the journal on.
+	 */
+	public void writeCheckpoint(byte[] data, long generation, int records) throws IOException
+	{
+		final var bytes = ByteBuffer.allocate(CHECKPOINT_HEADER_BYTES + data.length)
+			.putInt(MAGIC)
+			.putLong(generation)
+			.putInt(records)
+			.put(data);
+
+		final var tmp = checkpointPath.resolveSibling(CHECKPOINT_FILE + ".tmp");
+		Files.write(tmp, bytes.array());
+		Files.move(tmp, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Move on to the next generation once its checkpoint is written,
+	 * dropping the records it covers and keeping any appended since
+	 */
+	public void applyCheckpoint(int records)
+	{
+		final var kept = new byte[(size - records) * RECORD_BYTES];
+		final var view = buffer.duplicate();
+		view.position(HEADER_BYTES + records * RECORD_BYTES);
+		view.get(kept);
+
+		clear(generation + 1);
+
+		view.position(HEADER_BYTES);
+		view.put(kept);
+		size = kept.length / RECORD_BYTES;
+		buffer.putInt(COUNT_OFFSET, size);
+	}
+
+	private void clear(long generation)
+	{
+		this.generation = generation;
+		size = 0;
+		buffer.putLong(GENERATION_OFFSET, generation);
+		buffer.putInt(COUNT_OFFSET, 0);
+	}
+
+	private void grow()
+	{
+		try
+		{
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) buffer.capacity() * 2);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Failed to grow session journal", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		buffer.force();
+		lock.release();
+		channel.close();
+	}
+}
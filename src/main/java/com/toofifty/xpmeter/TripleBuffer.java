@@ -0,0 +1,78 @@
+package com.toofifty.xpmeter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free handoff of reusable buffers from one writer thread to
+ * one reader thread. The writer fills the back buffer and publishes it,
+ * and the reader picks up the latest published buffer as its front.
+ * Each side always owns one buffer outright, so neither waits on the
+ * other and nothing is allocated after construction. Publishing twice
+ * before the reader picks up simply replaces the unread buffer.
+ */
+public class TripleBuffer<T>
+{
+	private static final int INDEX_MASK = 0b11;
+	private static final int FRESH = 0b100;
+
+	private final Object[] buffers;
+
+	/**
+	 * Index of the buffer between the writer and the reader,
+	 * flagged FRESH if the reader hasn't picked it up yet
+	 */
+	private final AtomicInteger middle = new AtomicInteger(2);
+
+	private int back = 0;
+	private int front = 1;
+
+	public TripleBuffer(Supplier<T> factory)
+	{
+		buffers = new Object[] {factory.get(), factory.get(), factory.get()};
+	}
+
+	/**
+	 * Buffer for the writer to fill
+	 */
+	@SuppressWarnings("unchecked")
+	public T getBack()
+	{
+		return (T) buffers[back];
+	}
+
+	/**
+	 * Hand the back buffer over to the reader, and take an
+	 * unused buffer as the new back buffer
+	 */
+	public void publish()
+	{
+		back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+	}
+
+	/**
+	 * Swap in the latest published buffer as the front buffer, if
+	 * there is one the reader hasn't seen yet
+	 *
+	 * @return true if the front buffer changed
+	 */
+	public boolean acquire()
+	{
+		if ((middle.get() & FRESH) == 0)
+		{
+			return false;
+		}
+
+		front = middle.getAndSet(front) & INDEX_MASK;
+		return true;
+	}
+
+	/**
+	 * Buffer the reader last acquired
+	 */
+	@SuppressWarnings("unchecked")
+	public T getFront()
+	{
+		return (T) buffers[front];
+	}
+}
@@ -52,4 +52,24 @@ public class Util
 
 		return String.format("%,dM", number / 1000000);
 	}
+
+	public static String bytesFormat(long bytes)
+	{
+		if (bytes < 1024)
+		{
+			return bytes + "B";
+		}
+
+		if (bytes < 1024 * 1024)
+		{
+			return String.format("%,dKB", bytes / 1024);
+		}
+
+		return String.format("%.1fMB", bytes / (1024d * 1024d));
+	}
+
+	public static String millisFormat(long nanos)
+	{
+		return String.format("%.2fms", nanos / 1_000_000d);
+	}
 }
@@ -6,13 +6,13 @@ import static com.toofifty.xpmeter.Util.shortFormat;
 import static com.toofifty.xpmeter.Util.ticksToTime;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.awt.image.BufferedImage;
+import lombok.Getter;
 import lombok.Setter;
 import net.runelite.api.Skill;
 import net.runelite.client.game.SkillIconManager;
@@ -23,6 +23,12 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 	public static final int MIN_WIDTH = 60;
 	public static final int SKILL_ICON_WIDTH = 16;
 
+	private static final Skill[] SKILLS = Skill.values();
+
+	private static final int PERFORMANCE_LINES = 2;
+	private static final int TIMELINE_SAMPLES = 300;
+	private static final int TIMELINE_ROW_HEIGHT = 24;
+
 	// padding
 
 	private static final int TIME_LABEL_TPAD = 2;
@@ -34,24 +40,117 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 
 	private static final Color PAUSE_MARKER_COLOR = new Color(0, 166, 255, 128);
 	private static final Color LOGOUT_MARKER_COLOR = new Color(255, 68, 0, 128);
+	private static final Color BOOKMARK_MARKER_COLOR = new Color(255, 215, 0, 160);
 	private static final Color CURSOR_MARKER_COLOR = new Color(255, 255, 255, 128);
+	private static final Color COMPUTE_TIME_COLOR = new Color(0, 200, 255);
+	private static final Color RENDER_TIME_COLOR = new Color(255, 100, 200);
+	private static final Color CACHE_SIZE_COLOR = new Color(100, 220, 100);
+	private static final Color HIT_RATIO_COLOR = new Color(255, 200, 0);
 
 	@Setter private SkillIconManager skillIconManager;
 
-	// incoming data
+	// incoming data, published by the aggregator thread
+
+	@Getter private final TripleBuffer<XPTracker.Aggregate> aggregates = new TripleBuffer<>(XPTracker.Aggregate::new);
+
+	// current frame's data, from the latest aggregate when each frame starts
+
+	private XPTracker.Aggregate aggregate = aggregates.getFront();
+	private int maxXpPerHour = 0;
+	private int currentTick = 0;
+	private MarkerTrack pauses = null;
+	private MarkerTrack logouts = null;
+	private MarkerTrack levelUps = null;
+	private MarkerTrack bookmarks = null;
+
+	/**
+	 * Skills on the chart, as a bit per skill ordinal
+	 */
+	private long chartedSkills = 0;
+
+	private XPTracker.Performance performance;
+
+	/**
+	 * Counts acquired aggregates, to tell when data has changed
+	 */
+	private int aggregateVersion = 0;
+
+	/**
+	 * Time taken by recent frames, only touched by the client thread
+	 */
+	private final LatencyHistogram renderTimes = new LatencyHistogram(XPTracker.LATENCY_WINDOW);
 
-	@Setter private Map<Skill, List<Point>> skillXpHistories = null;
+	/**
+	 * Recent updates, recorded whether or not it's shown
+	 */
+	private final PerformanceTimeline timeline = new PerformanceTimeline(TIMELINE_SAMPLES);
 
 	/**
-	 * Skill keys, sorted from the lowest current rate to highest
+	 * Points of the timeline's sparklines, reused for each line
 	 */
-	@Setter private List<Skill> sortedSkills = null;
-	@Setter private int maxXpPerHour = 0;
-	@Setter private int currentTick = 0;
-	@Setter private Set<Integer> pauses = null;
-	@Setter private Set<Integer> logouts = null;
+	private final int[] timelineXs = new int[TIMELINE_SAMPLES];
+	private final int[] timelineYs = new int[TIMELINE_SAMPLES];
 
-	@Setter private XPTracker.Performance performance;
+	/**
+	 * Slowest frame since the last aggregate was acquired
+	 */
+	private long slowestFrame = 0;
+
+	/**
+	 * What the layers below were drawn with - if any of it changes,
+	 * everything is drawn again
+	 */
+	private final Dimension layoutDimension = new Dimension();
+	private final Rectangle layoutBounds = new Rectangle();
+	private Theme layoutTheme = null;
+	private Font layoutFont = null;
+
+	/**
+	 * Background and XP labels and markers, only drawn again when the
+	 * XP scale, the layout or their config changes
+	 */
+	private BufferedImage xpLayer = null;
+	private int xpLayerMaxXpPerHour = 0;
+	private int xpLayerFlags = 0;
+
+	/**
+	 * Time labels and markers, drawn again as the chart moves along,
+	 * without redrawing the layer below
+	 */
+	private BufferedImage timeLayer = null;
+	private int timeLayerTick = 0;
+	private int timeLayerSpan = 0;
+	private int timeLayerFlags = 0;
+
+	/**
+	 * History plot, scrolled along as the chart moves so only the new
+	 * points need drawing. Drawn again in full when the scale changes.
+	 */
+	private BufferedImage plotLayer = null;
+	private int plotVersion = 0;
+	private long plotSkills = 0;
+	private int plotMaxXpPerHour = 0;
+	private int plotRange = 0;
+	private Skill plotHoveredSkill = null;
+	private int plotStartTick = 0;
+	private int plotLastTick = 0;
+
+	/**
+	 * Points of the line being plotted, reused for every skill
+	 */
+	private int[] plotXs = new int[0];
+	private int[] plotYs = new int[0];
+
+	/**
+	 * Hovered rates and tooltips by skill ordinal (null if the rate is 0),
+	 * kept while the hovered tick and data stay the same
+	 */
+	private final int[] hoverRates = new int[SKILLS.length];
+	private final String[] hoverLabels = new String[SKILLS.length];
+	private int hoverTick = -1;
+	private int hoverVersion = -1;
+	private boolean hoverPrecise = false;
+	private boolean hoverLongFormat = false;
 
 	@Setter private Point mouse = null;
 
@@ -68,9 +167,11 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 	@Setter private boolean showSkillIcons = true;
 	@Setter private boolean longFormatNumbers = false;
 	@Setter private boolean showPerformance = false;
+	@Setter private boolean showPerformanceTimeline = false;
 	@Setter private boolean showHoverTooltips = true;
 	@Setter private boolean dimNonHoveredSkills = true;
 	@Setter private boolean showAllHovers = false;
+	@Setter private boolean preciseHover = false;
 	@Setter private Theme theme = Theme.RUNELITE;
 
 	// local data
@@ -79,9 +180,46 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 
 	public boolean hasData()
 	{
+		acquireAggregate();
 		return currentTick > 0 && maxXpPerHour > 0;
 	}
 
+	/**
+	 * Switch to the latest published aggregate, if there is a new one.
+	 * Only called between frames, so a whole frame is always drawn from
+	 * the same aggregate.
+	 */
+	private void acquireAggregate()
+	{
+		if (aggregates.acquire())
+		{
+			aggregate = aggregates.getFront();
+			aggregateVersion++;
+			maxXpPerHour = aggregate.getMaxXpPerHour();
+			currentTick = aggregate.getCurrentTick();
+			pauses = aggregate.getPauses();
+			logouts = aggregate.getLogouts();
+			levelUps = aggregate.getLevelUps();
+			bookmarks = aggregate.getBookmarks();
+
+			chartedSkills = 0;
+			for (var i = 0; i < aggregate.getSkillCount(); i++)
+			{
+				chartedSkills |= 1L << aggregate.getSortedSkill(i).ordinal();
+			}
+			performance = aggregate.getPerformance();
+
+			timeline.add(
+				performance.getComputeTime(),
+				slowestFrame,
+				performance.getCacheSize(),
+				performance.getCacheHits(),
+				performance.getCacheMisses()
+			);
+			slowestFrame = 0;
+		}
+	}
+
 	@Override
 	public Dimension render(Graphics2D graphics)
 	{
@@ -90,6 +228,10 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 			return new Dimension(0, 0);
 		}
 
+		final var event = new XPMeterEvents.Render();
+		event.begin();
+		final var start = System.nanoTime();
+
 		// antialias off results in thicker looking lines,
 		// and are better upscaled by xBR
 		graphics.setRenderingHint(
@@ -103,23 +245,117 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 		setWidthMin(Math.max(currentTick - span, 0));
 		setWidthMax(currentTick);
 
-		// background
-		setColor(theme.chartBackground);
-		fillRect(0, 0, size.width, size.height);
-		setColor(theme.chartBorder);
-		drawRect(0, 0, size.width, size.height);
-
-		drawXpLabels();
-		drawTimeLabels();
-		drawHistoryPlot();
+		final var layoutChanged = checkLayout(dimension);
+		drawXpLayer(dimension, layoutChanged);
+		drawTimeLayer(dimension, layoutChanged);
+		drawHistoryPlot(dimension, layoutChanged);
 		drawCurrentRates();
-		drawPauses();
-		drawPerformance();
+		drawMarkers();
 		drawMouseOver();
 
+		// the debug overlays below aren't part of the frame they measure
+		final var frameTime = System.nanoTime() - start;
+		renderTimes.record(frameTime);
+		slowestFrame = Math.max(slowestFrame, frameTime);
+
+		if (event.shouldCommit())
+		{
+			event.skillCount = aggregate.getSkillCount();
+			event.span = Util.ticksToSeconds(span);
+			event.resolution = performance.getRenderedResolution();
+			event.pointCount = performance.getPointCount();
+			event.cacheHits = performance.getCacheHits();
+			event.cacheMisses = performance.getCacheMisses();
+			event.commit();
+		}
+
+		drawPerformance();
+		drawPerformanceTimeline();
 		return dimension;
 	}
 
+	/**
+	 * Check whether the chart's size, margins, theme or font have changed
+	 * since the last frame, which every layer has to be drawn again for
+	 */
+	private boolean checkLayout(Dimension dimension)
+	{
+		final var loc = getPreferredLocation();
+		if (layoutDimension.equals(dimension)
+			&& layoutBounds.x == offset.x - loc.x
+			&& layoutBounds.y == offset.y - loc.y
+			&& layoutBounds.width == size.width
+			&& layoutBounds.height == size.height
+			&& layoutTheme == theme
+			&& graphics.getFont().equals(layoutFont))
+		{
+			return false;
+		}
+
+		layoutDimension.setSize(dimension);
+		layoutBounds.setBounds(offset.x - loc.x, offset.y - loc.y, size.width, size.height);
+		layoutTheme = theme;
+		layoutFont = graphics.getFont();
+		return true;
+	}
+
+	/**
+	 * Draw the background and XP axis from the cached image, redrawing
+	 * the image first if the scale or layout has changed
+	 */
+	private void drawXpLayer(Dimension dimension, boolean layoutChanged)
+	{
+		final var flags = (showXpLabels ? 1 : 0) | (showXpMarkers ? 2 : 0);
+
+		if (layoutChanged
+			|| xpLayer == null
+			|| xpLayerMaxXpPerHour != maxXpPerHour
+			|| xpLayerFlags != flags)
+		{
+			xpLayer = resizeLayer(xpLayer, dimension);
+			renderLayer(xpLayer, () ->
+			{
+				// background
+				setColor(theme.chartBackground);
+				fillRect(0, 0, size.width, size.height);
+				setColor(theme.chartBorder);
+				drawRect(0, 0, size.width, size.height);
+
+				drawXpLabels();
+			});
+
+			xpLayerMaxXpPerHour = maxXpPerHour;
+			xpLayerFlags = flags;
+		}
+
+		drawLayer(xpLayer);
+	}
+
+	/**
+	 * Draw the time axis from the cached image, redrawing the image
+	 * first if the chart has moved along or the layout has changed
+	 */
+	private void drawTimeLayer(Dimension dimension, boolean layoutChanged)
+	{
+		final var flags = (showTimeLabels ? 1 : 0) | (showTimeMarkers ? 2 : 0);
+
+		if (layoutChanged
+			|| timeLayer == null
+			|| timeLayerTick != currentTick
+			|| timeLayerSpan != span
+			|| timeLayerFlags != flags)
+		{
+			timeLayer = resizeLayer(timeLayer, dimension);
+			renderLayer(timeLayer, this::drawTimeLabels);
+
+			timeLayerTick = currentTick;
+			timeLayerSpan = span;
+			timeLayerFlags = flags;
+		}
+
+		drawLayer(timeLayer);
+	}
+
 	private void drawXpLabels()
 	{
 		final var xpIntervals = Intervals.getXpIntervals(maxXpPerHour);
@@ -223,16 +459,16 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 		final var baseX = size.width + theme.rateMargin;
 
 		var lastY = size.height;
-		for (var skill : sortedSkills)
+		for (var i = 0; i < aggregate.getSkillCount(); i++)
 		{
+			final var skill = aggregate.getSortedSkill(i);
 			final var skillColor = getSkillColor(skill);
-			final var history = skillXpHistories.get(skill);
-			final var last = history.get(history.size() - 1);
+			final var last = aggregate.getSeries(skill).getLastRate();
 
-			if (last != null && last.getY() != 0)
+			if (last != 0)
 			{
-				final var rate = format(last.y);
-				var y = mapY(last.y, true);
+				final var rate = format(last);
+				var y = mapY(last, true);
 				var x = baseX;
 
 				final var boxHeight = fontHeight + 2;
@@ -318,61 +554,178 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 		}
 	}
 
-	private void drawHistoryPlot()
+	/**
+	 * Draw the histories from the plot layer. While the scale stays the
+	 * same, points already on the layer don't move relative to each other
+	 * (see {@link XPTracker.Aggregate#getHistoryVersion()}), so the layer
+	 * is scrolled by however far the chart has moved and only drawn from
+	 * the last point it had onwards.
+	 */
+	private void drawHistoryPlot(Dimension dimension, boolean layoutChanged)
 	{
-		for (var skill : sortedSkills)
+		final var hovered = dimNonHoveredSkills ? hoveredSkill : null;
+		final var range = widthMax - widthMin;
+		final var lastTick = getPlotLastTick();
+
+		if (layoutChanged
+			|| plotLayer == null
+			|| plotVersion != aggregate.getHistoryVersion()
+			|| plotSkills != chartedSkills
+			|| plotMaxXpPerHour != maxXpPerHour
+			|| plotRange != range
+			|| plotHoveredSkill != hovered
+			|| plotStartTick > widthMin
+			|| -mapX(plotStartTick) >= size.width)
+		{
+			plotLayer = resizeLayer(plotLayer, dimension);
+			renderLayer(plotLayer, () -> plotHistories(0));
+
+			plotVersion = aggregate.getHistoryVersion();
+			plotSkills = chartedSkills;
+			plotMaxXpPerHour = maxXpPerHour;
+			plotRange = range;
+			plotHoveredSkill = hovered;
+		}
+		else if (plotStartTick != widthMin || plotLastTick != lastTick)
 		{
+			final var fromX = mapX(plotLastTick);
+			scrollLayer(plotLayer, -mapX(plotStartTick));
+			renderLayer(plotLayer, fromX, () -> plotHistories(fromX));
+		}
+
+		plotStartTick = widthMin;
+		plotLastTick = lastTick;
+
+		drawLayer(plotLayer);
+	}
+
+	/**
+	 * Tick of the last point that every history has reached
+	 */
+	private int getPlotLastTick()
+	{
+		var lastTick = Integer.MAX_VALUE;
+		for (var i = 0; i < aggregate.getSkillCount(); i++)
+		{
+			final var history = aggregate.getSeries(aggregate.getSortedSkill(i));
+			if (!history.isEmpty())
+			{
+				lastTick = Math.min(lastTick, history.getLastTick());
+			}
+		}
+
+		return lastTick == Integer.MAX_VALUE ? widthMin : lastTick;
+	}
+
+	/**
+	 * Draw the lines that reach the chart x or further right. Each skill's
+	 * connected lines are drawn as one polyline, split where it flatlines.
+	 */
+	private void plotHistories(int fromX)
+	{
+		for (var i = 0; i < aggregate.getSkillCount(); i++)
+		{
+			final var skill = aggregate.getSortedSkill(i);
+			final var history = aggregate.getSeries(skill);
 			setColor(getSkillColor(skill));
 			var isFlatlining = false;
 
-			Point prev = null;
-			for (var point : skillXpHistories.get(skill))
+			// lines (and their shadows) end at most a pixel right of their
+			// last point - start far enough back to know if the last flatlines
+			var first = history.size();
+			while (first > 0 && mapX(history.getTick(first - 1)) + 1 >= fromX)
+			{
+				first--;
+			}
+			first = Math.max(first - 2, 0);
+
+			// one more for the line to the end of the chart
+			if (plotXs.length < history.size() + 1)
+			{
+				plotXs = new int[history.size() * 2 + 1];
+				plotYs = new int[history.size() * 2 + 1];
+			}
+
+			var count = 0;
+			var prevY = 0;
+			for (var j = first; j < history.size(); j++)
 			{
-				final var x = mapX(point.x);
-				final var y = mapY(point.y, true);
+				final var rate = history.getRate(j);
+				final var x = mapX(history.getTick(j));
+				final var y = mapY(rate, true);
 
 				// flat lining if xp = 0, and trying to draw at same y coord
-				isFlatlining = prev != null && point.getY() == 0 && prev.y == y;
+				isFlatlining = j > first && rate == 0 && prevY == y;
 
-				if (prev != null && !isFlatlining)
+				if (isFlatlining)
 				{
-					drawLine(prev.x, prev.y, x, y, theme.plotShadow);
+					plotRun(count);
+					count = 0;
 				}
 
-				prev = new Point(x, y);
+				plotXs[count] = x;
+				plotYs[count] = y;
+				count++;
+				prevY = y;
 			}
 
 			// draw to end of chart
-			if (prev != null && !isFlatlining)
+			if (!history.isEmpty() && !isFlatlining)
 			{
-				drawLine(prev.x, prev.y, size.width, prev.y, theme.plotShadow);
+				plotXs[count] = size.width;
+				plotYs[count] = prevY;
+				count++;
 			}
+
+			plotRun(count);
 		}
 	}
 
-	public void drawPauses()
+	private void plotRun(int count)
 	{
-		setColor(PAUSE_MARKER_COLOR);
-		for (var tick : pauses)
+		if (count > 1)
 		{
-			final var x = mapX(tick);
-			if (x >= 0)
-			{
-				drawVMarker(x);
-			}
+			drawPolyline(plotXs, plotYs, count, theme.plotShadow);
 		}
+	}
+
+	/**
+	 * Draw markers within the span - each track is searched for the
+	 * first visible marker, so older markers cost nothing
+	 */
+	public void drawMarkers()
+	{
+		final var startTick = Math.max(currentTick - span, 0);
+
+		setColor(PAUSE_MARKER_COLOR);
+		drawMarkers(pauses, startTick);
 
 		setColor(LOGOUT_MARKER_COLOR);
-		for (var tick : logouts)
+		drawMarkers(logouts, startTick);
+
+		setColor(BOOKMARK_MARKER_COLOR);
+		drawMarkers(bookmarks, startTick);
+
+		// only for skills on the chart, in the skill's colour
+		for (var i = levelUps.firstAfter(startTick - 1); i < levelUps.size() && levelUps.getTick(i) <= currentTick; i++)
 		{
-			final var x = mapX(tick);
-			if (x >= 0)
+			final var skill = levelUps.getValue(i);
+			if ((chartedSkills & 1L << skill) != 0)
 			{
-				drawVMarker(x);
+				setColor(getSkillColor(SKILLS[skill]));
+				drawVMarker(mapX(levelUps.getTick(i)));
 			}
 		}
 	}
 
+	private void drawMarkers(MarkerTrack markers, int startTick)
+	{
+		for (var i = markers.firstAfter(startTick - 1); i < markers.size() && markers.getTick(i) <= currentTick; i++)
+		{
+			drawVMarker(mapX(markers.getTick(i)));
+		}
+	}
+
 	private void drawPerformance()
 	{
 		if (!showPerformance)
@@ -380,34 +733,144 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 			return;
 		}
 
-		final var time = performance.getComputeTime() == 0 ? "<1" : "" + performance.getComputeTime();
-
-		final var text = time + "ms "
+		final var text = Util.millisFormat(performance.getComputeTime()) + " "
 			+ "Cached: " + performance.getCacheSize() + " "
 			+ "Hits: " + performance.getCacheHits() + " "
 			+ "Misses: " + performance.getCacheMisses() + " "
-			+ "Resolution: " + performance.getRenderedResolution() + "s ";
+			+ "Evicted: " + performance.getCacheEvictions() + " "
+			+ "Resolution: " + performance.getRenderedResolution() + "s "
+			+ (performance.isParallel() ? "(parallel) " : "")
+			+ "Gains: " + performance.getGainCount() + " "
+			+ "(" + Util.bytesFormat(performance.getGainBytes()) + ", boxed ~"
+			+ Util.bytesFormat((long) performance.getGainCount() * GainStore.BOXED_GAIN_BYTES) + ")";
+
+		final var latencies = "Compute " + percentiles(
+				performance.getComputeP50(),
+				performance.getComputeP95(),
+				performance.getComputeP99(),
+				performance.getComputeMax())
+			+ " (" + performance.getComputeTimes() + " updates) "
+			+ "Render " + percentiles(
+				renderTimes.percentile(0.5),
+				renderTimes.percentile(0.95),
+				renderTimes.percentile(0.99),
+				renderTimes.max())
+			+ " (" + renderTimes.size() + " frames, " + getDrawCalls() + " draw calls) "
+			+ "Points: " + performance.getPointCount() + " (" + performance.getNewPointCount() + " new) "
+			+ "Scanned: " + performance.getScannedGains();
 
 		final var y = size.height + fontHeight + TIME_LABEL_TPAD + (showTimeLabels ? fontHeight + TIME_LABEL_TPAD : 0);
 
-		if (performance.getComputeTime() > 30)
+		setColor(getLatencyColor(performance.getComputeTime()));
+		drawText(text, 0, y, true);
+		setColor(getLatencyColor(Math.max(performance.getComputeP99(), renderTimes.percentile(0.99))));
+		drawText(latencies, 0, y + fontHeight + TIME_LABEL_TPAD, true);
+	}
+
+	/**
+	 * Sparklines of the recent updates, newest on the right - compute and
+	 * render time on one row, cache size and hit ratio on the next
+	 */
+	private void drawPerformanceTimeline()
+	{
+		if (!showPerformanceTimeline || timeline.size() < 2)
 		{
-			setColor(Color.RED);
+			return;
 		}
-		else if (performance.getComputeTime() > 10)
+
+		final var top = size.height + calculateBottomMargin() - 2 * (TIMELINE_ROW_HEIGHT + TIME_LABEL_TPAD) + TIME_LABEL_TPAD;
+		final var timesBottom = top + TIMELINE_ROW_HEIGHT;
+		final var cacheBottom = timesBottom + TIME_LABEL_TPAD + TIMELINE_ROW_HEIGHT;
+
+		setColor(theme.chartBackground);
+		fillRect(0, top, size.width, TIMELINE_ROW_HEIGHT);
+		fillRect(0, timesBottom + TIME_LABEL_TPAD, size.width, TIMELINE_ROW_HEIGHT);
+
+		// compute and render share a scale, so they can be compared
+		final var maxTime = Math.max(timeline.getMaxTime(), 1);
+		final var maxCacheSize = Math.max(timeline.getMaxCacheSize(), 1);
+		final var count = timeline.size();
+		final var last = count - 1;
+
+		for (var i = 0; i < count; i++)
+		{
+			timelineXs[i] = timelineX(i);
+		}
+
+		for (var i = 0; i < count; i++)
 		{
-			setColor(Color.ORANGE);
+			timelineYs[i] = timesBottom - scale(timeline.getRenderTime(i), maxTime);
 		}
-		else if (performance.getComputeTime() > 4)
+		drawSparkline(RENDER_TIME_COLOR, count);
+
+		for (var i = 0; i < count; i++)
 		{
-			setColor(Color.YELLOW);
+			timelineYs[i] = timesBottom - scale(timeline.getComputeTime(i), maxTime);
 		}
-		else
+		drawSparkline(COMPUTE_TIME_COLOR, count);
+
+		for (var i = 0; i < count; i++)
 		{
-			setColor(theme.axisLabelColor);
+			timelineYs[i] = cacheBottom - scale(timeline.getCacheSize(i), maxCacheSize);
 		}
+		drawSparkline(CACHE_SIZE_COLOR, count);
 
-		drawText(text, 0, y, true);
+		for (var i = 0; i < count; i++)
+		{
+			timelineYs[i] = cacheBottom - scale(timeline.getHitRatio(i), 100);
+		}
+		drawSparkline(HIT_RATIO_COLOR, count);
+
+		setColor(theme.axisLabelColor);
+		drawText("Compute / render, max " + Util.millisFormat(maxTime), 2, top + fontHeight, true);
+		drawText("Cached " + timeline.getCacheSize(last) + " (max " + maxCacheSize + "), "
+			+ timeline.getHitRatio(last) + "% hits", 2, timesBottom + TIME_LABEL_TPAD + fontHeight, true);
+	}
+
+	private void drawSparkline(Color color, int count)
+	{
+		setColor(color);
+		drawPolyline(timelineXs, timelineYs, count, false);
+	}
+
+	private int timelineX(int index)
+	{
+		return (timeline.capacity() - timeline.size() + index) * size.width / (timeline.capacity() - 1);
+	}
+
+	/**
+	 * Height of the value in a timeline row, where max is the full row
+	 */
+	private static int scale(long value, long max)
+	{
+		return (int) (value * (TIMELINE_ROW_HEIGHT - 1) / max);
+	}
+
+	private static String percentiles(long p50, long p95, long p99, long max)
+	{
+		return "p50/95/99/max: " + Util.millisFormat(p50) + " / " + Util.millisFormat(p95)
+			+ " / " + Util.millisFormat(p99) + " / " + Util.millisFormat(max);
+	}
+
+	private Color getLatencyColor(long nanos)
+	{
+		final var millis = nanos / 1_000_000;
+		if (millis > 30)
+		{
+			return Color.RED;
+		}
+
+		if (millis > 10)
+		{
+			return Color.ORANGE;
+		}
+
+		if (millis > 4)
+		{
+			return Color.YELLOW;
+		}
+
+		return theme.axisLabelColor;
 	}
 
 	public void drawMouseOver()
@@ -434,33 +897,31 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 		setColor(CURSOR_MARKER_COLOR);
 		drawVMarker(mx);
 
+		if (hoveredTick != hoverTick
+			|| aggregateVersion != hoverVersion
+			|| preciseHover != hoverPrecise
+			|| longFormatNumbers != hoverLongFormat)
+		{
+			updateHover(hoveredTick);
+		}
+
 		var closestY = Integer.MIN_VALUE;
-		var closestXp = 0;
+		String closestLabel = null;
 		Skill closestSkill = null;
 
-		for (var skill : skillXpHistories.keySet())
+		for (var i = 0; i < aggregate.getSkillCount(); i++)
 		{
-			final var history = skillXpHistories.get(skill);
+			final var skill = aggregate.getSortedSkill(i);
+			final var label = hoverLabels[skill.ordinal()];
 
-			var closestDist = Integer.MAX_VALUE;
-			Point closest = null;
-			for (var dataPoint : history)
+			if (label != null)
 			{
-				final var dist = Math.abs(dataPoint.x - hoveredTick);
-				if (dist < closestDist)
-				{
-					closestDist = dist;
-					closest = dataPoint;
-				}
-			}
-
-			if (closest != null && closest.y != 0)
-			{
-				final var y = mapY(closest.y, true);
+				// precise rates can be above the highest point
+				final var y = Math.max(mapY(hoverRates[skill.ordinal()], true), 0);
 				if (Math.abs(y - mouse.y) < Math.abs(closestY - mouse.y))
 				{
 					closestY = y;
-					closestXp = closest.y;
+					closestLabel = label;
 					closestSkill = skill;
 				}
 
@@ -469,8 +930,6 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 					continue;
 				}
 
-				final var label = skill.getName() + ": " + format(closest.y) + "/hr";
-
 				drawThemedTooltip(theme, x, y, label, getSkillColor(skill));
 			}
 		}
@@ -479,10 +938,39 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 
 		if (!showAllHovers && closestSkill != null)
 		{
-			final var label = closestSkill.getName() + ": " + format(closestXp) + "/hr";
+			drawThemedTooltip(theme, x, closestY, closestLabel, getSkillColor(closestSkill));
+		}
+	}
+
+	/**
+	 * Look up each skill's rate at the hovered tick - from the nearest
+	 * point in its history, or exactly from the tracker's gain index
+	 */
+	private void updateHover(int tick)
+	{
+		for (var i = 0; i < aggregate.getSkillCount(); i++)
+		{
+			final var skill = aggregate.getSortedSkill(i);
+			final int rate;
+			if (preciseHover)
+			{
+				rate = aggregate.getXPPerHourAt(skill, tick);
+			}
+			else
+			{
+				final var history = aggregate.getSeries(skill);
+				final var closest = history.closestIndex(tick);
+				rate = closest < 0 ? 0 : history.getRate(closest);
+			}
 
-			drawThemedTooltip(theme, x, closestY, label, getSkillColor(closestSkill));
+			hoverRates[skill.ordinal()] = rate;
+			hoverLabels[skill.ordinal()] = rate == 0 ? null : skill.getName() + ": " + format(rate) + "/hr";
 		}
+
+		hoverTick = tick;
+		hoverVersion = aggregateVersion;
+		hoverPrecise = preciseHover;
+		hoverLongFormat = longFormatNumbers;
 	}
 
 	@Override
@@ -545,15 +1033,15 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 		var currentRateWidth = 0;
 		if (showCurrentRates || showSkillIcons)
 		{
-			for (var rates : skillXpHistories.values())
+			for (var i = 0; i < aggregate.getSkillCount(); i++)
 			{
-				final var last = rates.get(rates.size() - 1);
-				if (last == null)
+				final var history = aggregate.getSeries(aggregate.getSortedSkill(i));
+				if (history.isEmpty())
 				{
 					continue;
 				}
 
-				final var text = format(last.y);
+				final var text = format(history.getLastRate());
 				var width = 0;
 
 				if (showCurrentRates)
@@ -584,7 +1072,9 @@ public class XPChart extends XPChartBase implements LayoutableRenderableEntity
 	@Override
 	protected int calculateBottomMargin()
 	{
-		return (showTimeLabels ? fontHeight : 0) + (showPerformance ? fontHeight + TIME_LABEL_TPAD : 0);
+		return (showTimeLabels ? fontHeight : 0)
+			+ (showPerformance ? PERFORMANCE_LINES * (fontHeight + TIME_LABEL_TPAD) : 0)
+			+ (showPerformanceTimeline ? 2 * (TIMELINE_ROW_HEIGHT + TIME_LABEL_TPAD) : 0);
 	}
 
 	private Color getSkillColor(Skill skill)
@@ -1,5 +1,6 @@
 package com.toofifty.xpmeter;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.FontMetrics;
@@ -32,10 +33,16 @@ public abstract class XPChartBase implements LayoutableRenderableEntity
 	@Setter protected int widthMax;
 	@Setter protected int widthMin;
 
+	/**
+	 * Java2D draw calls made so far this frame
+	 */
+	@Getter private int drawCalls = 0;
+
 	@Override
 	public Dimension render(Graphics2D g)
 	{
 		graphics = g;
+		drawCalls = 0;
 		fontMetrics = g.getFontMetrics();
 		fontHeight = fontMetrics.getHeight();
 
@@ -54,6 +61,88 @@ public abstract class XPChartBase implements LayoutableRenderableEntity
 		);
 	}
 
+	/**
+	 * Make sure a layer image covers the whole chart, margins included,
+	 * creating a blank one if it's missing or the wrong size
+	 */
+	protected BufferedImage resizeLayer(BufferedImage layer, Dimension dimension)
+	{
+		// labels and shadows can be drawn a little outside the margins
+		final var width = dimension.width + 2 * fontHeight;
+		final var height = dimension.height + 2 * fontHeight;
+		if (layer == null || layer.getWidth() != width || layer.getHeight() != height)
+		{
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		}
+
+		return layer;
+	}
+
+	/**
+	 * Draw into a layer image, so the result can be drawn again with
+	 * {@link #drawLayer} instead of repeating it
+	 */
+	protected void renderLayer(BufferedImage layer, Runnable draw)
+	{
+		renderLayer(layer, Integer.MIN_VALUE, draw);
+	}
+
+	/**
+	 * Draw into the part of a layer image from the chart x rightwards,
+	 * clearing it first and leaving the rest of the layer as it was
+	 */
+	protected void renderLayer(BufferedImage layer, int fromX, Runnable draw)
+	{
+		final var target = graphics;
+		final var targetOffset = offset;
+		final var loc = getPreferredLocation();
+		final var layerOffset = new Point(offset.x - loc.x + fontHeight, offset.y - loc.y + fontHeight);
+		final var clipX = (int) Math.max((long) layerOffset.x + fromX, 0);
+
+		final var g = layer.createGraphics();
+		g.clipRect(clipX, 0, layer.getWidth() - clipX, layer.getHeight());
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(clipX, 0, layer.getWidth() - clipX, layer.getHeight());
+		g.setComposite(AlphaComposite.SrcOver);
+		g.setRenderingHints(target.getRenderingHints());
+		g.setFont(target.getFont());
+
+		graphics = g;
+		offset = layerOffset;
+		try
+		{
+			draw.run();
+		}
+		finally
+		{
+			g.dispose();
+			graphics = target;
+			offset = targetOffset;
+		}
+	}
+
+	/**
+	 * Move a layer's contents left by a number of pixels, dropping
+	 * anything that scrolls past the left of the chart
+	 */
+	protected void scrollLayer(BufferedImage layer, int dx)
+	{
+		final var left = offset.x - getPreferredLocation().x + fontHeight;
+
+		final var g = layer.createGraphics();
+		g.copyArea(dx, 0, layer.getWidth() - dx, layer.getHeight(), -dx, 0);
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, left, layer.getHeight());
+		g.dispose();
+	}
+
+	protected void drawLayer(BufferedImage layer)
+	{
+		final var loc = getPreferredLocation();
+		graphics.drawImage(layer, loc.x - fontHeight, loc.y - fontHeight, null);
+		drawCalls++;
+	}
+
 	protected void setColor(Color color)
 	{
 		graphics.setColor(color);
@@ -67,9 +156,11 @@ public abstract class XPChartBase implements LayoutableRenderableEntity
 			graphics.setColor(Color.BLACK);
 			graphics.drawString(text, offset.x + x + 1, offset.y + y + 1);
 			graphics.setColor(color);
+			drawCalls++;
 		}
 
 		graphics.drawString(text, offset.x + x, offset.y + y);
+		drawCalls++;
 	}
 
 	protected void drawText(String text, int x, int y)
@@ -88,12 +179,14 @@ public abstract class XPChartBase implements LayoutableRenderableEntity
 				offset.x + x2 + 1, offset.y + y2 + 1
 			);
 			graphics.setColor(color);
+			drawCalls++;
 		}
 
 		graphics.drawLine(
 			offset.x + x1, offset.y + y1,
 			offset.x + x2, offset.y + y2
 		);
+		drawCalls++;
 	}
 
 	protected void drawLine(int x1, int y1, int x2, int y2)
@@ -101,24 +194,51 @@ public abstract class XPChartBase implements LayoutableRenderableEntity
 		drawLine(x1, y1, x2, y2, false);
 	}
 
+	/**
+	 * Draw lines joining the first count points, as one call for the
+	 * shadow and one for the line however many points there are
+	 */
+	protected void drawPolyline(int[] xs, int[] ys, int count, boolean shadow)
+	{
+		if (shadow)
+		{
+			final var color = graphics.getColor();
+			graphics.setColor(Color.BLACK);
+			graphics.translate(offset.x + 1, offset.y + 1);
+			graphics.drawPolyline(xs, ys, count);
+			graphics.translate(-offset.x - 1, -offset.y - 1);
+			graphics.setColor(color);
+			drawCalls++;
+		}
+
+		graphics.translate(offset.x, offset.y);
+		graphics.drawPolyline(xs, ys, count);
+		graphics.translate(-offset.x, -offset.y);
+		drawCalls++;
+	}
+
 	protected void drawRect(int x, int y, int w, int h)
 	{
 		graphics.drawRect(offset.x + x, offset.y + y, w, h);
+		drawCalls++;
 	}
 
 	protected void drawRoundRect(int x, int y, int w, int h, int arc)
 	{
 		graphics.drawRoundRect(offset.x + x, offset.y + y, w, h, arc, arc);
+		drawCalls++;
 	}
 
 	protected void fillRect(int x, int y, int w, int h)
 	{
 		graphics.fillRect(offset.x + x, offset.y + y, w, h);
+		drawCalls++;
 	}
 
 	protected void fillRoundRect(int x, int y, int w, int h, int arc)
 	{
 		graphics.fillRoundRect(offset.x + x, offset.y + y, w, h, arc, arc);
+		drawCalls++;
 	}
 
 	protected void drawVMarker(int x)
@@ -134,6 +254,7 @@ public abstract class XPChartBase implements LayoutableRenderableEntity
 	protected void drawImage(BufferedImage image, int x, int y)
 	{
 		graphics.drawImage(image, offset.x + x, offset.y + y, null);
+		drawCalls++;
 	}
 
 	protected void drawThemedTooltip(Theme theme, int x, int y, String label, Color skillColor)
@@ -163,7 +284,14 @@ public abstract class XPChartBase implements LayoutableRenderableEntity
 	 */
 	protected int mapX(int x)
 	{
-		return (x - widthMin) * size.width / (widthMax - widthMin);
+		// counted from tick 0 rather than the left edge, so when the chart
+		// scrolls, every x moves by the same whole number of pixels
+		return column(x) - column(widthMin);
+	}
+
+	private int column(int x)
+	{
+		return (int) ((long) x * size.width / (widthMax - widthMin));
 	}
 
 	protected int unmapX(int x)
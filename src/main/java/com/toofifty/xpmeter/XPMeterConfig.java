@@ -59,6 +59,34 @@ public interface XPMeterConfig extends Config
 		return 5;
 	}
 
+	@ConfigItem(
+		name = "Retention",
+		keyName = "retention",
+		description = "Keep XP gains at full detail for at least the last X minutes. Older gains are merged into per-minute totals",
+		position = 4,
+		section = tracking
+	)
+	@Units(Units.MINUTES)
+	@Range(min = 0)
+	default int retention()
+	{
+		return 60;
+	}
+
+	@ConfigItem(
+		name = "Memory limit",
+		keyName = "memoryLimit",
+		description = "Merge old XP gains into coarser totals when tracked gains, including the totals kept for wide spans, use more than this much memory",
+		position = 5,
+		section = tracking
+	)
+	@Units(" MB")
+	@Range(min = 1)
+	default int memoryLimit()
+	{
+		return 16;
+	}
+
 	@ConfigSection(
 		name = "Skills",
 		description = "Skill filtering",
@@ -541,12 +569,24 @@ public interface XPMeterConfig extends Config
 		return true;
 	}
 
+	@ConfigItem(
+		name = "Precise hover",
+		keyName = "preciseHover",
+		description = "Show the XP rate at exactly the hovered time, rather than at the nearest point on the chart",
+		section = interactivity,
+		position = 4
+	)
+	default boolean preciseHover()
+	{
+		return false;
+	}
+
 	@ConfigItem(
 		name = "Scroll to zoom",
 		keyName = "scrollZoom",
 		description = "Hold Shift + scroll over the overlay to adjust the display span",
 		section = interactivity,
-		position = 4
+		position = 5
 	)
 	default boolean scrollZoom()
 	{
@@ -573,36 +613,73 @@ public interface XPMeterConfig extends Config
 		return false;
 	}
 
+	@ConfigItem(
+		name = "Show performance timeline",
+		keyName = "showPerformanceTimeline",
+		description = "Show compute / render time and cache use of the last few hundred updates under the chart",
+		section = debugging,
+		position = 2
+	)
+	default boolean showPerformanceTimeline()
+	{
+		return false;
+	}
+
 	@ConfigItem(
 		name = "Disable cache",
 		keyName = "disableCache",
 		description = "Disables caching computed values. Disabling this can have a large performance impact.",
 		section = debugging,
-		position = 2
+		position = 3
 	)
 	default boolean disableCache()
 	{
 		return false;
 	}
 
+	@ConfigItem(
+		name = "Cache size",
+		keyName = "cacheSize",
+		description = "Maximum number of computed values to cache. The least recently used values are evicted once full.",
+		section = debugging,
+		position = 4
+	)
+	@Range(min = 1024)
+	default int cacheSize()
+	{
+		return 16384;
+	}
+
 	@ConfigItem(
 		name = "Disable dynamic resolution",
 		keyName = "disableDynamicResolution",
 		description = "Disables resolution dynamically scaling to the width of the chart.",
 		section = debugging,
-		position = 3
+		position = 5
 	)
 	default boolean disableDynamicResolution()
 	{
 		return false;
 	}
 
+	@ConfigItem(
+		name = "Parallel aggregation",
+		keyName = "parallelAggregation",
+		description = "Compute skill histories in parallel when enough skills are tracked over a long enough span",
+		section = debugging,
+		position = 6
+	)
+	default boolean parallelAggregation()
+	{
+		return true;
+	}
+
 	@ConfigItem(
 		name = "Enable data import/export",
 		keyName = "enableDataMenuOptions",
 		description = "Enables data import and export tool options when shift + right-clicking the overlay",
 		section = debugging,
-		position = 4
+		position = 7
 	)
 	default boolean enableDataMenuOptions()
 	{
@@ -614,7 +691,7 @@ public interface XPMeterConfig extends Config
 		keyName = "sessionData",
 		description = "Result of the last data export",
 		section = debugging,
-		position = 5
+		position = 8
 	)
 	default String sessionData()
 	{
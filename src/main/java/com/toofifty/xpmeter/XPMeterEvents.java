@@ -0,0 +1,151 @@
+package com.toofifty.xpmeter;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder events for the tracker and chart's hot paths, so a JFR
+ * recording of the client shows what the plugin costs and which settings
+ * it was running with. Fields are only filled in when shouldCommit() - with
+ * recording off, begin/commit do nothing and the JIT drops the allocation.
+ */
+final class XPMeterEvents
+{
+	private static final String CATEGORY = "XP Meter";
+
+	private XPMeterEvents()
+	{
+	}
+
+	@Name("com.toofifty.xpmeter.Aggregate")
+	@Label("Aggregate")
+	@Category(CATEGORY)
+	@Description("Histories computed for the chart from a snapshot")
+	@StackTrace(false)
+	static class Aggregate extends Event
+	{
+		@Label("Skills")
+		int skillCount;
+
+		@Label("Span")
+		@Timespan(Timespan.SECONDS)
+		long span;
+
+		@Label("Resolution")
+		@Timespan(Timespan.SECONDS)
+		long resolution;
+
+		@Label("Points")
+		int pointCount;
+
+		@Label("New Points")
+		int newPointCount;
+
+		@Label("Scanned Gains")
+		int scannedGains;
+
+		@Label("Cache Hits")
+		int cacheHits;
+
+		@Label("Cache Misses")
+		int cacheMisses;
+
+		@Label("Parallel")
+		boolean parallel;
+	}
+
+	@Name("com.toofifty.xpmeter.CacheClear")
+	@Label("Cache Clear")
+	@Category(CATEGORY)
+	@Description("Rate cache replaced after a reset, a config change or a clear")
+	@StackTrace(false)
+	static class CacheClear extends Event
+	{
+		@Label("Skills")
+		int skillCount;
+
+		@Label("Span")
+		@Timespan(Timespan.SECONDS)
+		long span;
+
+		@Label("Resolution")
+		@Timespan(Timespan.SECONDS)
+		long resolution;
+
+		@Label("Entries Dropped")
+		int droppedEntries;
+
+		@Label("Capacity")
+		int capacity;
+	}
+
+	@Name("com.toofifty.xpmeter.Restore")
+	@Label("Restore")
+	@Category(CATEGORY)
+	@Description("Parsed session swapped in for the tracked session")
+	@StackTrace(false)
+	static class Restore extends Event
+	{
+		@Label("Skills")
+		int skillCount;
+
+		@Label("Gains")
+		int gainCount;
+
+		@Label("Session Length")
+		@Timespan(Timespan.SECONDS)
+		long sessionLength;
+	}
+
+	@Name("com.toofifty.xpmeter.Export")
+	@Label("Export")
+	@Category(CATEGORY)
+	@Description("Session encoded for the config or a journal checkpoint")
+	@StackTrace(false)
+	static class Export extends Event
+	{
+		@Label("Skills")
+		int skillCount;
+
+		@Label("Gains")
+		int gainCount;
+
+		@Label("Size")
+		@DataAmount
+		long size;
+	}
+
+	@Name("com.toofifty.xpmeter.Render")
+	@Label("Render")
+	@Category(CATEGORY)
+	@Description("Chart frame drawn on the client thread")
+	@StackTrace(false)
+	static class Render extends Event
+	{
+		@Label("Skills")
+		int skillCount;
+
+		@Label("Span")
+		@Timespan(Timespan.SECONDS)
+		long span;
+
+		@Label("Resolution")
+		@Timespan(Timespan.SECONDS)
+		long resolution;
+
+		@Label("Points")
+		int pointCount;
+
+		@Label("Cache Hits")
+		int cacheHits;
+
+		@Label("Cache Misses")
+		int cacheMisses;
+	}
+}
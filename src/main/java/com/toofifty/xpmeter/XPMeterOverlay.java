@@ -47,6 +47,13 @@ public class XPMeterOverlay extends OverlayPanel
 			e -> tracker.reset()
 		);
 
+		addMenuEntry(
+			MenuAction.RUNELITE_OVERLAY,
+			"Bookmark",
+			"XP Meter",
+			e -> tracker.addBookmark()
+		);
+
 		updateMenuEntries(config.enableDataMenuOptions());
 	}
 
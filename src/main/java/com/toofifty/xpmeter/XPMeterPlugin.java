@@ -1,9 +1,18 @@
 package com.toofifty.xpmeter;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Provides;
 import static com.toofifty.xpmeter.Util.secondsToTicks;
-import java.util.HashSet;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.Client;
 import net.runelite.api.GameState;
@@ -13,6 +22,8 @@ import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GameTick;
 import net.runelite.api.events.ScriptCallbackEvent;
 import net.runelite.api.events.StatChanged;
+import net.runelite.client.RuneLite;
+import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.config.RuneLiteConfig;
 import net.runelite.client.eventbus.Subscribe;
@@ -29,26 +40,108 @@ import net.runelite.client.ui.overlay.OverlayManager;
 )
 public class XPMeterPlugin extends Plugin
 {
+	private static final Path JOURNAL_DIR = RuneLite.RUNELITE_DIR.toPath().resolve("xp-meter");
+
 	@Inject private Client client;
 	@Inject private OverlayManager overlayManager;
 	@Inject private ConfigManager configManager;
 	@Inject private RuneLiteConfig runeLiteConfig;
+	@Inject private ClientThread clientThread;
+	@Inject private ScheduledExecutorService executor;
 
 	@Inject private XPMeterConfig config;
 	@Inject private XPTracker tracker;
 	@Inject private XPMeterOverlay overlay;
 
+	private ExecutorService aggregator;
+
+	/**
+	 * Snapshots handed from the client thread to the aggregator thread.
+	 * Publishing a new snapshot before the last one was picked up
+	 * replaces it, so slow aggregates coalesce rather than queue up.
+	 */
+	private final TripleBuffer<XPTracker.Snapshot> snapshots = new TripleBuffer<>(XPTracker.Snapshot::new);
+	private final AtomicBoolean aggregateQueued = new AtomicBoolean();
+	private final Runnable aggregateTask = this::aggregate;
+
 	@Override
 	protected void startUp()
 	{
+		// at most one aggregate is ever waiting, and a bounded queue
+		// doesn't allocate a node per task. Updates still queued on the
+		// client thread when the plugin stops are dropped, rather than
+		// throwing there once the aggregator has shut down.
+		aggregator = new ThreadPoolExecutor(
+			1, 1,
+			0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(1),
+			new ThreadFactoryBuilder()
+				.setNameFormat("xp-meter-aggregator")
+				.setDaemon(true)
+				.build(),
+			new ThreadPoolExecutor.DiscardPolicy()
+		);
+		// a dropped update can leave this set from the last run
+		aggregateQueued.set(false);
+
 		overlayManager.add(overlay);
 		syncConfig(null);
+
+		// recovery rebuilds the tracker, which is only ever
+		// touched from the client thread
+		clientThread.invoke(this::openJournal);
 	}
 
 	@Override
 	protected void shutDown()
 	{
 		overlayManager.remove(overlay);
+		aggregator.shutdownNow();
+
+		// queued behind any recovery still waiting to run
+		clientThread.invoke(tracker::closeJournal);
+	}
+
+	/**
+	 * Pick up the last session where it left off, even if the client crashed
+	 */
+	private void openJournal()
+	{
+		try
+		{
+			if (!recover(SessionJournal.open(JOURNAL_DIR)))
+			{
+				// the same files would fail the same way on every start,
+				// so set them aside and start a new session
+				SessionJournal.moveAside(JOURNAL_DIR);
+				recover(SessionJournal.open(JOURNAL_DIR));
+			}
+		}
+		catch (IOException e)
+		{
+			log.warn("Failed to open session journal, this session won't be recovered after a crash", e);
+		}
+	}
+
+	/**
+	 * Recover the session from a journal, or close the journal if it
+	 * can't be, e.g. if its checkpoint is corrupt or from a newer version
+	 *
+	 * @return whether the session was recovered
+	 */
+	private boolean recover(SessionJournal journal) throws IOException
+	{
+		try
+		{
+			tracker.recover(journal);
+			return true;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			log.warn("Failed to recover the last session", e);
+			journal.close();
+			return false;
+		}
 	}
 
 	@Subscribe
@@ -71,9 +164,8 @@ public class XPMeterPlugin extends Plugin
 		}
 
 		tracker.tick();
-		// only update histories every Nth tick, otherwise the plotted
-		// lines start to wobble (as the current tick changes, it calculates each
-		// history point off-phase which means the values are different every tick)
+		// only update histories every Nth tick - points stay on the same ticks
+		// between updates, and only the newest points are computed each time
 		if (tracker.getCurrentTick() % secondsToTicks(config.resolution()) == 0)
 		{
 			update();
@@ -129,7 +221,7 @@ public class XPMeterPlugin extends Plugin
 			}
 			else if (event.getEntry().getOption().equals("Restore data"))
 			{
-				tracker.restore(config.sessionData());
+				restore(config.sessionData());
 			}
 		}
 	}
@@ -174,9 +266,11 @@ public class XPMeterPlugin extends Plugin
 		chart.setShowSkillIcons(config.showSkillIcons());
 		chart.setLongFormatNumbers(config.longFormatNumbers());
 		chart.setShowPerformance(config.showPerformance());
+		chart.setShowPerformanceTimeline(config.showPerformanceTimeline());
 		chart.setShowHoverTooltips(config.showHoverTooltips());
 		chart.setDimNonHoveredSkills(config.dimNonHoveredSkills());
 		chart.setShowAllHovers(config.showAllHovers());
+		chart.setPreciseHover(config.preciseHover());
 
 		overlay.setBackgroundColor(
 			config.theme().overlayBackground != null
@@ -185,6 +279,13 @@ public class XPMeterPlugin extends Plugin
 		);
 		chart.setTheme(config.theme());
 
+		// config changes arrive on the config thread, but the tracker and
+		// the snapshot buffer are only ever touched from the client thread
+		clientThread.invoke(() -> syncTracker(changedKey));
+	}
+
+	private void syncTracker(String changedKey)
+	{
 		if ("windowInterval".equals(changedKey)
 			|| "trackingMode".equals(changedKey))
 		{
@@ -193,7 +294,7 @@ public class XPMeterPlugin extends Plugin
 
 		if (changedKey == null || changedKey.startsWith("track"))
 		{
-			final var enabledSkills = new HashSet<Skill>();
+			final var enabledSkills = EnumSet.noneOf(Skill.class);
 			for (var skill : Skill.values())
 			{
 				final var enabled = configManager.<Boolean>getConfiguration(
@@ -224,17 +325,73 @@ public class XPMeterPlugin extends Plugin
 		}
 	}
 
+	/**
+	 * Snapshot the tracker and queue the snapshot for aggregation.
+	 * Only the snapshot is taken on the client thread - if the previous
+	 * snapshot is still waiting, it is replaced rather than queued twice.
+	 */
 	private void update()
 	{
-		final var chart = overlay.getChart();
+		tracker.snapshot(snapshots.getBack(), overlay.getChart().getBounds().width);
+		snapshots.publish();
+
+		if (!aggregateQueued.getAndSet(true))
+		{
+			aggregator.execute(aggregateTask);
+		}
+	}
+
+	private void aggregate()
+	{
+		// cleared before picking up the snapshot, so anything
+		// published from here on queues another aggregate
+		aggregateQueued.set(false);
+
+		if (!snapshots.acquire())
+		{
+			return;
+		}
+
+		try
+		{
+			final var aggregates = overlay.getChart().getAggregates();
+			tracker.getAggregate(snapshots.getFront(), aggregates.getBack());
+			aggregates.publish();
+		}
+		catch (Exception e)
+		{
+			log.warn("Failed to aggregate XP histories", e);
+		}
+	}
 
-		chart.setSkillXpHistories(tracker.getAggregate(chart.getBounds().width));
-		chart.setSortedSkills(tracker.getSortedSkills());
-		chart.setMaxXpPerHour(tracker.getMaxXpPerHour());
-		chart.setCurrentTick(tracker.getCurrentTick());
-		chart.setPauses(tracker.getPauses());
-		chart.setLogouts(tracker.getLogouts());
-		chart.setPerformance(tracker.getPerformance());
+	/**
+	 * Parse session data off the client thread, then swap it
+	 * into the tracker in one go once it's fully read
+	 */
+	private void restore(String data)
+	{
+		executor.execute(() ->
+		{
+			try
+			{
+				final var session = XPTracker.parse(data);
+				clientThread.invokeLater(() ->
+				{
+					if (aggregator.isShutdown())
+					{
+						// the plugin stopped while the data was parsed
+						return;
+					}
+
+					tracker.restore(session);
+					update();
+				});
+			}
+			catch (IOException | RuntimeException e)
+			{
+				log.warn("Failed to restore session data", e);
+			}
+		});
 	}
 
 	private void updateScroll(int dir)
@@ -1,27 +1,33 @@
 package com.toofifty.xpmeter;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonParser;
-import com.google.gson.annotations.Expose;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.stream.JsonReader;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import static com.toofifty.xpmeter.Util.secondsToTicks;
-import java.awt.Point;
-import java.time.Duration;
-import java.time.Instant;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
-import lombok.AllArgsConstructor;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Experience;
 import net.runelite.api.Skill;
 
 @Slf4j
@@ -30,31 +36,132 @@ public class XPTracker
 {
 	private static final int ONE_MINUTE = 100;
 	private static final int ONE_HOUR = 60 * ONE_MINUTE;
+	private static final Skill[] SKILLS = Skill.values();
+
+	private static final int PARALLEL_MIN_SKILLS = 3;
+	private static final int PARALLEL_MIN_WORK = 20_000;
+
+	private static final int COMPACT_INTERVAL = 10 * ONE_MINUTE;
+
+	/**
+	 * Bucket widths old gains are merged into. Gains are always merged
+	 * per-minute, and only into the wider buckets while over the memory limit.
+	 */
+	private static final int[] COMPACT_BUCKET_TICKS = {ONE_MINUTE, 10 * ONE_MINUTE, ONE_HOUR};
+
+	private static final int CHECKPOINT_INTERVAL = ONE_HOUR;
+
+	/**
+	 * Number of recent updates latency percentiles are taken over
+	 */
+	public static final int LATENCY_WINDOW = 256;
+
+	private static final int HAS_LAST_XP = 1;
+	private static final int HAS_GAINS = 2;
 
 	@Inject private XPMeterConfig config;
-	@Inject private Gson gson;
 
-	// data
-	@Expose private final Map<Skill, List<XPGain>> xpGained = new HashMap<>();
-	@Expose private final Map<Skill, Integer> lastXp = new HashMap<>();
-	@Expose private final Map<Skill, Integer> startTicks = new HashMap<>();
+	// data, indexed by skill ordinal - gains and pyramids are null
+	// until the skill's first gain
+	private final GainStore[] xpGained = new GainStore[SKILLS.length];
+	private final GainPyramid[] pyramids = new GainPyramid[SKILLS.length];
+	private final int[] lastXp = new int[SKILLS.length];
+	private final int[] startTicks = new int[SKILLS.length];
+
+	/**
+	 * Skills with a last XP, as a bit per skill ordinal
+	 */
+	private long lastXpSkills = 0;
+
+	@Getter private int currentTick;
+	@Getter private boolean paused;
+	private final MarkerTrack pauses = new MarkerTrack();
+	private final MarkerTrack logouts = new MarkerTrack();
 
-	@Expose @Getter private int currentTick;
-	@Expose @Getter private boolean paused;
-	@Expose @Getter private final Set<Integer> pauses = new HashSet<>();
-	@Expose @Getter private final Set<Integer> logouts = new HashSet<>();
+	/**
+	 * Level-ups, with the skill ordinal as the marker's value
+	 */
+	private final MarkerTrack levelUps = new MarkerTrack();
+	private final MarkerTrack bookmarks = new MarkerTrack();
 
 	// transient
-	@Setter private Set<Skill> enabledSkills;
 
-	private final Map<Integer, Integer> cache = new HashMap<>();
-	@Getter private List<Skill> sortedSkills;
-	@Getter private int maxXpPerHour;
+	/**
+	 * Skills shown on the chart, as a bit per skill ordinal
+	 */
+	private long enabledSkills = 0;
 
-	private int cacheHits = 0;
-	private int cacheMisses = 0;
+	/**
+	 * Bumped whenever cached rates become stale, i.e. the session is reset.
+	 * The cache itself is only touched by whichever thread computes aggregates,
+	 * which replaces it when it sees a snapshot from a newer generation.
+	 */
+	private volatile int cacheGeneration = 0;
+	private RateCache cache;
+	private int cachedGeneration;
 
-	@Getter private Performance performance;
+	/**
+	 * Histories kept between aggregates, each computed up to its history
+	 * tick (or -1 if it must be recomputed from scratch), and how many
+	 * points were computed for the last aggregate. Like the cache, these
+	 * are only touched by the aggregating thread.
+	 */
+	private final Series[] histories = new Series[SKILLS.length];
+	private final int[] historyTicks = new int[SKILLS.length];
+	private final int[] computedPoints = new int[SKILLS.length];
+	private int historyGeneration = -1;
+	private int historySpan;
+	private int historyResolution;
+	private int historyWindowInterval;
+	private TrackingMode historyTrackingMode;
+
+	/**
+	 * Bumped whenever a history is computed from scratch rather than
+	 * extended, so the chart knows when it can't just add the new points
+	 */
+	private int historyVersion = 0;
+
+	/**
+	 * Time taken by recent aggregates, only touched by the aggregating thread
+	 */
+	private final LatencyHistogram computeTimes = new LatencyHistogram(LATENCY_WINDOW);
+
+	/**
+	 * Where every change is recorded, once a session has been recovered from it
+	 */
+	private SessionJournal journal;
+
+	/**
+	 * Runs work on views of the session that the client thread shouldn't
+	 * wait on. At most one thread, which exits while idle, so tasks run
+	 * in the order they were queued.
+	 */
+	private final ExecutorService background = new ThreadPoolExecutor(
+		0, 1,
+		30, TimeUnit.SECONDS,
+		new LinkedBlockingQueue<>(),
+		new ThreadFactoryBuilder()
+			.setNameFormat("xp-meter-background")
+			.setDaemon(true)
+			.build()
+	);
+
+	/**
+	 * Compaction running in the background, along with the stores it
+	 * started from and the views of them it's compacting
+	 */
+	private CompletableFuture<GainStore[]> compaction;
+	private GainStore[] compactionSources;
+	private GainStore[] compactionViews;
+
+	/**
+	 * Checkpoint being written in the background (completing with whether
+	 * it was written), and how many journal records it covers. Another
+	 * checkpoint asked for meanwhile is queued until it's done.
+	 */
+	private CompletableFuture<Boolean> checkpointWrite;
+	private int checkpointRecords;
+	private boolean checkpointQueued;
 
 	public void track(Skill skill, int xp)
 	{
@@ -63,228 +170,1503 @@ public class XPTracker
 			return;
 		}
 
-		if (lastXp.containsKey(skill))
+		final var i = skill.ordinal();
+		if ((lastXpSkills & bit(skill)) != 0)
 		{
-			if (!xpGained.containsKey(skill))
+			if (xpGained[i] == null)
 			{
-				xpGained.put(skill, new ArrayList<>());
-				startTicks.put(skill, currentTick);
+				xpGained[i] = new GainStore();
+				startTicks[i] = currentTick;
+
+				// sealed up to now straight away, as the skill can be
+				// aggregated before the next tick seals it
+				pyramids[i] = new GainPyramid();
+				pyramids[i].seal(xpGained[i], currentTick);
 			}
 
-			final var diff = xp - lastXp.get(skill);
+			final var diff = xp - lastXp[i];
 			if (diff != 0)
 			{
-				xpGained.get(skill).add(new XPGain(currentTick, diff));
+				xpGained[i].add(currentTick, diff);
+			}
+
+			if (Experience.getLevelForXp(xp) > Experience.getLevelForXp(lastXp[i]))
+			{
+				levelUps.add(currentTick, i);
 			}
 		}
 
-		lastXp.put(skill, xp);
+		lastXp[i] = xp;
+		lastXpSkills |= bit(skill);
+
+		if (journal != null)
+		{
+			journal.track(currentTick, skill, xp);
+		}
 	}
 
 	public boolean isTracking()
 	{
-		return !lastXp.isEmpty();
+		return lastXpSkills != 0;
 	}
 
-	public Set<Skill> getTrackedSkills()
+	public void setEnabledSkills(Set<Skill> skills)
 	{
-		return xpGained.keySet().stream()
-			.filter(skill -> enabledSkills.contains(skill))
-			.collect(Collectors.toSet());
+		var enabled = 0L;
+		for (var skill : skills)
+		{
+			enabled |= bit(skill);
+		}
+		enabledSkills = enabled;
 	}
 
-	public int getXPPerHourAt(Skill skill, int tick, int windowInterval, TrackingMode trackingMode)
+	private static long bit(Skill skill)
 	{
-		final var hash = Objects.hash(skill, tick, windowInterval, trackingMode);
+		return 1L << skill.ordinal();
+	}
+
+	/**
+	 * Capture everything needed to compute an aggregate into a reusable
+	 * snapshot, so it can be computed away from the client thread while
+	 * tracking continues
+	 */
+	public void snapshot(Snapshot snapshot, int maxPixels)
+	{
+		snapshot.currentTick = currentTick;
+		snapshot.trackedCount = 0;
 
-		if (!cache.containsKey(hash) || config.disableCache())
+		for (var skill : SKILLS)
 		{
-			final var xpGains = xpGained.getOrDefault(skill, List.of());
-			final var interval = secondsToTicks(windowInterval);
-			final var elapsed = tick - startTicks.getOrDefault(skill, 0);
+			final var i = skill.ordinal();
+			final var gains = xpGained[i];
+			if (gains == null)
+			{
+				snapshot.xpGained[i] = null;
+				continue;
+			}
 
-			final var xpGained = xpGains.stream()
-				.filter((XPGain xpGain) -> xpGain.tick <= tick && (
-					trackingMode == TrackingMode.CUMULATIVE || xpGain.tick > (tick - interval)
-				))
-				.mapToInt(xpGain -> xpGain.xp)
-				.sum();
+			snapshot.gainViews[i] = gains.snapshot(snapshot.gainViews[i]);
+			snapshot.pyramidViews[i] = pyramids[i].snapshot(snapshot.pyramidViews[i]);
+			snapshot.xpGained[i] = snapshot.gainViews[i];
+			snapshot.startTicks[i] = startTicks[i];
 
-			if (trackingMode == TrackingMode.CUMULATIVE)
+			if ((enabledSkills & bit(skill)) != 0)
 			{
-				cache.put(hash, xpGained * ONE_HOUR / Math.max(ONE_MINUTE, elapsed));
+				snapshot.trackedSkills[snapshot.trackedCount++] = skill;
 			}
-			else
+		}
+
+		snapshot.pauses = pauses.snapshot(snapshot.pauses);
+		snapshot.logouts = logouts.snapshot(snapshot.logouts);
+		snapshot.levelUps = levelUps.snapshot(snapshot.levelUps);
+		snapshot.bookmarks = bookmarks.snapshot(snapshot.bookmarks);
+
+		snapshot.span = config.span();
+		snapshot.windowInterval = config.windowInterval();
+		snapshot.resolution = config.resolution();
+		snapshot.trackingMode = config.trackingMode();
+		snapshot.disableCache = config.disableCache();
+		snapshot.disableDynamicResolution = config.disableDynamicResolution();
+		snapshot.parallelAggregation = config.parallelAggregation();
+		snapshot.cacheSize = config.cacheSize();
+		snapshot.cacheGeneration = cacheGeneration;
+		snapshot.maxPixels = maxPixels;
+	}
+
+	/**
+	 * @param rateCache cache to read and store the rate in, or null to always compute it
+	 */
+	@VisibleForTesting
+	int getXPPerHourAt(Snapshot snapshot, RateCache rateCache, Skill skill, int tick, int windowInterval, TrackingMode trackingMode)
+	{
+		final var key = RateCache.key(skill, tick, windowInterval, trackingMode);
+		final var cached = rateCache == null ? RateCache.MISSING : rateCache.get(key);
+
+		if (cached == RateCache.MISSING)
+		{
+			final var rate = getXPPerHourAt(
+				snapshot.xpGained[skill.ordinal()],
+				snapshot.startTicks[skill.ordinal()],
+				tick,
+				windowInterval,
+				trackingMode
+			);
+
+			if (rateCache != null)
 			{
-				cache.put(hash, xpGained * ONE_HOUR / interval);
+				rateCache.put(key, rate);
 			}
 
-			cacheMisses++;
+			return rate;
 		}
-		else
+
+		return (int) cached;
+	}
+
+	/**
+	 * XP per hour at the tick, from a skill's gains (or null if it has none)
+	 * and the tick the skill's tracking started
+	 */
+	private static int getXPPerHourAt(GainStore gains, int startTick, int tick, int windowInterval, TrackingMode trackingMode)
+	{
+		final var interval = secondsToTicks(windowInterval);
+		final var elapsed = tick - startTick;
+
+		var xpGained = 0L;
+		if (gains != null)
+		{
+			xpGained = trackingMode == TrackingMode.CUMULATIVE
+				? gains.totalAt(tick)
+				: gains.totalBetween(tick - interval, tick);
+		}
+
+		return trackingMode == TrackingMode.CUMULATIVE
+			? toRate(xpGained, Math.max(ONE_MINUTE, elapsed))
+			: toRate(xpGained, interval);
+	}
+
+	/**
+	 * @return number of gains read - each gain a sliding window sweeps
+	 * past, plus one lookup for each cumulative rate that wasn't cached
+	 */
+	@VisibleForTesting
+	int getHistory(Snapshot snapshot, RateCache rateCache, Skill skill, int resolution, Series history)
+	{
+		history.clear();
+		final var startTick = getStartTick(snapshot, secondsToTicks(resolution));
+		return appendHistory(snapshot, rateCache, skill, resolution, startTick, history);
+	}
+
+	/**
+	 * Bring a skill's kept history up to the snapshot's tick. Points before
+	 * the last update only depend on gains that were logged by then, which
+	 * can't change - so unless the history was marked for recomputing,
+	 * points that scrolled out of the span are dropped and only new ones
+	 * are computed.
+	 *
+	 * @return number of gains read, as for getHistory
+	 */
+	private int updateHistory(Snapshot snapshot, RateCache rateCache, Skill skill, int resolution)
+	{
+		final var i = skill.ordinal();
+		if (histories[i] == null)
+		{
+			histories[i] = new Series();
+		}
+
+		final var history = histories[i];
+		final var step = secondsToTicks(resolution);
+		final var startTick = getStartTick(snapshot, step);
+
+		if (historyTicks[i] < 0 || history.isEmpty())
+		{
+			final var scannedGains = getHistory(snapshot, rateCache, skill, resolution, history);
+			historyTicks[i] = snapshot.currentTick;
+			computedPoints[i] = history.size();
+			return scannedGains;
+		}
+
+		history.removeBefore(startTick);
+		final var kept = history.size();
+		final var fromTick = history.isEmpty() ? startTick : history.getLastTick() + step;
+		final var scannedGains = appendHistory(snapshot, rateCache, skill, resolution, fromTick, history);
+		historyTicks[i] = snapshot.currentTick;
+		computedPoints[i] = history.size() - kept;
+		return scannedGains;
+	}
+
+	/**
+	 * Mark every kept history for recomputing if it was computed
+	 * for an older session, or with different settings
+	 */
+	private void checkHistories(Snapshot snapshot, int resolution)
+	{
+		if (snapshot.cacheGeneration == historyGeneration
+			&& snapshot.span == historySpan
+			&& resolution == historyResolution
+			&& snapshot.windowInterval == historyWindowInterval
+			&& snapshot.trackingMode == historyTrackingMode)
 		{
-			cacheHits++;
+			return;
 		}
 
-		return cache.get(hash);
+		Arrays.fill(historyTicks, -1);
+		historyGeneration = snapshot.cacheGeneration;
+		historySpan = snapshot.span;
+		historyResolution = resolution;
+		historyWindowInterval = snapshot.windowInterval;
+		historyTrackingMode = snapshot.trackingMode;
+	}
+
+	/**
+	 * Tick of the first point in the span. Points are placed on multiples
+	 * of the step, rather than counted from the start of the span, so they
+	 * stay put as the span moves along, however often the chart updates.
+	 */
+	private static int getStartTick(Snapshot snapshot, int step)
+	{
+		final var spanStart = Math.max(snapshot.currentTick - secondsToTicks(snapshot.span), 0);
+		return Math.floorDiv(spanStart + step - 1, step) * step;
 	}
 
-	public List<Point> getHistory(Skill skill, int resolution)
+	/**
+	 * Add a skill's points from the given tick up to the snapshot's tick
+	 */
+	private int appendHistory(Snapshot snapshot, RateCache rateCache, Skill skill, int resolution, int startTick, Series history)
 	{
-		final var history = new ArrayList<Point>();
-		final var startTick = Math.max(currentTick - secondsToTicks(config.span()), 0);
-		final var windowInterval = config.windowInterval();
-		final var trackingMode = config.trackingMode();
-		for (int t = startTick; t < currentTick; t += secondsToTicks(resolution))
+		final var windowInterval = snapshot.windowInterval;
+		final var trackingMode = snapshot.trackingMode;
+
+		if (trackingMode == TrackingMode.SLIDING_WINDOW)
+		{
+			final var step = secondsToTicks(resolution);
+			final var interval = secondsToTicks(windowInterval);
+
+			// reading from buckets no wider than the sample spacing moves each
+			// window back by less than one sample, which can't be seen on the chart,
+			// and buckets that divide the window keep its length (and rate) exact
+			final var level = GainPyramid.getLevel(step, interval);
+			if (level < 0)
+			{
+				return getWindowHistory(history, snapshot.xpGained[skill.ordinal()], startTick, snapshot.currentTick, step, interval);
+			}
+
+			getBucketedHistory(history, snapshot.pyramidViews[skill.ordinal()], level, startTick, snapshot.currentTick, step, interval);
+			return 0;
+		}
+
+		final var misses = rateCache == null ? 0 : rateCache.getMisses();
+		final var size = history.size();
+		for (int t = startTick; t < snapshot.currentTick; t += secondsToTicks(resolution))
 		{
-			history.add(new Point(t, getXPPerHourAt(skill, t, windowInterval, trackingMode)));
+			history.add(t, getXPPerHourAt(snapshot, rateCache, skill, t, windowInterval, trackingMode));
 		}
 
-		return history;
+		return rateCache == null ? history.size() - size : rateCache.getMisses() - misses;
 	}
 
-	public Map<Skill, List<Point>> getAggregate(int maxPixels)
+	/**
+	 * Evaluate a sliding window history in one pass over the gains.
+	 * Consecutive sample windows overlap, so rather than summing each
+	 * window separately, gains are added as they enter the window
+	 * and subtracted as they leave it.
+	 */
+	@VisibleForTesting
+	static int getWindowHistory(Series history, GainStore gains, int startTick, int endTick, int step, int interval)
 	{
-		cacheHits = 0;
-		cacheMisses = 0;
-		final var start = Instant.now();
+		// skip straight to the first gain inside the first window
+		final var first = gains.firstAfter(startTick - interval);
+		var enter = first;
+		var leave = first;
+		var xpGained = 0L;
 
-		maxXpPerHour = 0;
-		final var pixelResolution = config.disableDynamicResolution()
-			? 1
-			: config.span() / maxPixels;
-		final var resolution = Math.max(config.resolution(), pixelResolution);
-		final var skillHistories = new HashMap<Skill, List<Point>>();
-		final var skillCurrentRates = new HashMap<Skill, Integer>();
-		for (var skill : getTrackedSkills())
+		for (int t = startTick; t < endTick; t += step)
 		{
-			final var history = getHistory(skill, resolution);
-			skillHistories.put(skill, history);
+			while (enter < gains.size() && gains.getTick(enter) <= t)
+			{
+				xpGained += gains.getXp(enter++);
+			}
 
-			final var last = history.get(history.size() - 1);
-			skillCurrentRates.put(skill, last == null ? 0 : last.y);
+			while (leave < enter && gains.getTick(leave) <= t - interval)
+			{
+				xpGained -= gains.getXp(leave++);
+			}
+
+			history.add(t, toRate(xpGained, interval));
+		}
+
+		return enter - first + leave - first;
+	}
+
+	/**
+	 * Evaluate a sliding window history from one level of the
+	 * skill's pyramid, at a constant cost per point
+	 */
+	private void getBucketedHistory(Series history, GainPyramid pyramid, int level, int startTick, int endTick, int step, int interval)
+	{
+		for (int t = startTick; t < endTick; t += step)
+		{
+			final var xpGained = pyramid.totalAt(level, t) - pyramid.totalAt(level, t - interval);
+			history.add(t, toRate(xpGained, interval));
+		}
+	}
+
+	/**
+	 * XP per hour from the XP gained over a number of ticks. Worked out as a
+	 * long, since XP * ticks per hour overflows an int past ~358K XP.
+	 */
+	private static int toRate(long xpGained, int ticks)
+	{
+		return (int) Math.min(xpGained * ONE_HOUR / ticks, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Compute a fresh aggregate for the current state, on the calling thread
+	 */
+	public Aggregate getAggregate(int maxPixels)
+	{
+		final var snapshot = new Snapshot();
+		final var aggregate = new Aggregate();
+		snapshot(snapshot, maxPixels);
+		getAggregate(snapshot, aggregate);
+		return aggregate;
+	}
+
+	/**
+	 * Compute the aggregate for a snapshot, filling a reusable aggregate.
+	 * Snapshots are independent of the live tracker, but the cache is not -
+	 * this must only ever be called from one thread at a time.
+	 */
+	public void getAggregate(Snapshot snapshot, Aggregate aggregate)
+	{
+		if (cache == null
+			|| snapshot.cacheGeneration != cachedGeneration
+			|| RateCache.tableSize(snapshot.cacheSize) != cache.capacity())
+		{
+			final var event = new XPMeterEvents.CacheClear();
+			event.begin();
+
+			final var dropped = cache == null ? 0 : cache.getSize();
+			cache = new RateCache(snapshot.cacheSize);
+			cachedGeneration = snapshot.cacheGeneration;
+
+			if (event.shouldCommit())
+			{
+				event.skillCount = snapshot.trackedCount;
+				event.span = snapshot.span;
+				event.resolution = snapshot.resolution;
+				event.droppedEntries = dropped;
+				event.capacity = cache.capacity();
+				event.commit();
+			}
+		}
+
+		cache.resetStats();
+		final var event = new XPMeterEvents.Aggregate();
+		event.begin();
+		final var start = System.nanoTime();
+
+		final var resolution = getResolution(
+			snapshot.resolution,
+			snapshot.span,
+			snapshot.maxPixels,
+			snapshot.disableDynamicResolution
+		);
+
+		checkHistories(snapshot, resolution);
+
+		final var parallel = snapshot.parallelAggregation && isWorthParallelising(snapshot, resolution);
+		var scannedGains = 0;
+		if (parallel)
+		{
+			// the cache can't be shared between threads - cumulative rates
+			// are cheap enough to compute directly from the gain index
+			final var tasks = new ArrayList<ForkJoinTask<Integer>>(snapshot.trackedCount);
+			for (var i = 0; i < snapshot.trackedCount; i++)
+			{
+				final var skill = snapshot.trackedSkills[i];
+				tasks.add(ForkJoinPool.commonPool().submit(() -> updateHistory(snapshot, null, skill, resolution)));
+			}
+
+			for (var task : tasks)
+			{
+				scannedGains += task.join();
+			}
+		}
+		else
+		{
+			final var rateCache = snapshot.disableCache ? null : cache;
+			for (var i = 0; i < snapshot.trackedCount; i++)
+			{
+				final var skill = snapshot.trackedSkills[i];
+				scannedGains += updateHistory(snapshot, rateCache, skill, resolution);
+			}
+		}
 
-			for (var point : history)
+		// merge in skill order, so the result doesn't depend on which
+		// history finished first
+		var maxXpPerHour = 0;
+		var pointCount = 0;
+		var newPointCount = 0;
+		var recomputed = false;
+		for (var i = 0; i < snapshot.trackedCount; i++)
+		{
+			final var skill = snapshot.trackedSkills[i];
+			final var history = aggregate.series[skill.ordinal()];
+			history.copyFrom(histories[skill.ordinal()]);
+			pointCount += history.size();
+			newPointCount += computedPoints[skill.ordinal()];
+			recomputed |= !history.isEmpty() && computedPoints[skill.ordinal()] == history.size();
+			for (var j = 0; j < history.size(); j++)
 			{
-				if (point.y > maxXpPerHour)
+				if (history.getRate(j) > maxXpPerHour)
 				{
-					maxXpPerHour = point.y;
+					maxXpPerHour = history.getRate(j);
 				}
 			}
+
+			// insertion sort by current rate - ties keep skill order
+			final var rate = history.getLastRate();
+			var k = i;
+			while (k > 0 && aggregate.getSeries(aggregate.sortedSkills[k - 1]).getLastRate() > rate)
+			{
+				aggregate.sortedSkills[k] = aggregate.sortedSkills[k - 1];
+				k--;
+			}
+			aggregate.sortedSkills[k] = skill;
+		}
+
+		if (recomputed)
+		{
+			historyVersion++;
+		}
+
+		aggregate.skillCount = snapshot.trackedCount;
+		aggregate.historyVersion = historyVersion;
+		aggregate.maxXpPerHour = maxXpPerHour;
+		aggregate.currentTick = snapshot.currentTick;
+		aggregate.pauses = snapshot.pauses.snapshot(aggregate.pauses);
+		aggregate.logouts = snapshot.logouts.snapshot(aggregate.logouts);
+		aggregate.levelUps = snapshot.levelUps.snapshot(aggregate.levelUps);
+		aggregate.bookmarks = snapshot.bookmarks.snapshot(aggregate.bookmarks);
+		aggregate.windowInterval = snapshot.windowInterval;
+		aggregate.trackingMode = snapshot.trackingMode;
+		for (var i = 0; i < snapshot.trackedCount; i++)
+		{
+			final var skill = snapshot.trackedSkills[i].ordinal();
+			aggregate.gains[skill] = snapshot.xpGained[skill].snapshot(aggregate.gains[skill]);
+			aggregate.startTicks[skill] = snapshot.startTicks[skill];
+		}
+
+		var gainCount = 0;
+		var gainBytes = 0L;
+		for (var gains : snapshot.xpGained)
+		{
+			if (gains != null)
+			{
+				gainCount += gains.size();
+				gainBytes += gains.getByteSize();
+			}
 		}
 
-		sortedSkills = skillCurrentRates.entrySet().stream()
-			.sorted(Comparator.comparingInt(Map.Entry::getValue))
-			.map(Map.Entry::getKey)
-			.collect(Collectors.toList());
+		final var computeTime = System.nanoTime() - start;
+		computeTimes.record(computeTime);
+
+		final var performance = aggregate.performance;
+		performance.setComputeTime(computeTime);
+		performance.setComputeTimes(computeTimes.size());
+		performance.setComputeP50(computeTimes.percentile(0.5));
+		performance.setComputeP95(computeTimes.percentile(0.95));
+		performance.setComputeP99(computeTimes.percentile(0.99));
+		performance.setComputeMax(computeTimes.max());
+		performance.setPointCount(pointCount);
+		performance.setNewPointCount(newPointCount);
+		performance.setScannedGains(scannedGains);
+		performance.setCacheSize(cache.getSize());
+		performance.setCacheHits(cache.getHits());
+		performance.setCacheMisses(cache.getMisses());
+		performance.setCacheEvictions(cache.getEvictions());
+		performance.setRenderedResolution(resolution);
+		performance.setGainCount(gainCount);
+		performance.setGainBytes(gainBytes);
+		performance.setParallel(parallel);
 
-		final var time = Duration.between(start, Instant.now()).toMillis();
-		performance = new Performance(time, cache.size(), cacheHits, cacheMisses, resolution);
+		if (event.shouldCommit())
+		{
+			event.skillCount = snapshot.trackedCount;
+			event.span = snapshot.span;
+			event.resolution = resolution;
+			event.pointCount = pointCount;
+			event.newPointCount = newPointCount;
+			event.scannedGains = scannedGains;
+			event.cacheHits = cache.getHits();
+			event.cacheMisses = cache.getMisses();
+			event.parallel = parallel;
+			event.commit();
+		}
+	}
 
-		return skillHistories;
+	/**
+	 * Seconds between points in the histories - the configured resolution,
+	 * or wider if there would be more than one point per pixel
+	 */
+	@VisibleForTesting
+	static int getResolution(int resolution, int span, int maxPixels, boolean disableDynamicResolution)
+	{
+		final var pixelResolution = disableDynamicResolution ? 1 : span / maxPixels;
+		return Math.max(resolution, pixelResolution);
+	}
+
+	/**
+	 * Only fork when there are enough skills, and enough points and gains
+	 * to walk per skill, to outweigh the cost of handing out the tasks.
+	 * Kept histories only need the points since they were last updated.
+	 */
+	private boolean isWorthParallelising(Snapshot snapshot, int resolution)
+	{
+		if (snapshot.trackedCount < PARALLEL_MIN_SKILLS || ForkJoinPool.getCommonPoolParallelism() < 2)
+		{
+			return false;
+		}
+
+		final var step = secondsToTicks(resolution);
+		final var startTick = getStartTick(snapshot, step);
+		final var interval = secondsToTicks(snapshot.windowInterval);
+
+		var work = 0L;
+		for (var i = 0; i < snapshot.trackedCount; i++)
+		{
+			final var skill = snapshot.trackedSkills[i].ordinal();
+			final var fromTick = histories[skill] == null || historyTicks[skill] < 0
+				? startTick
+				: Math.max(historyTicks[skill], startTick);
+			final var gains = snapshot.xpGained[skill];
+			work += (snapshot.currentTick - fromTick) / step + gains.size() - gains.firstAfter(fromTick - interval);
+		}
+
+		return work >= PARALLEL_MIN_WORK;
 	}
 
 	public void tick()
 	{
 		currentTick++;
+
+		for (var i = 0; i < pyramids.length; i++)
+		{
+			if (pyramids[i] != null)
+			{
+				pyramids[i].seal(xpGained[i], currentTick);
+			}
+		}
+
+		applyCompaction();
+		if (currentTick % COMPACT_INTERVAL == 0)
+		{
+			compact();
+		}
+
+		if (journal != null)
+		{
+			journal.tick(currentTick);
+			applyCheckpoint();
+
+			if (currentTick % CHECKPOINT_INTERVAL == 0)
+			{
+				checkpoint();
+			}
+		}
+	}
+
+	private void advanceTo(int tick)
+	{
+		while (currentTick < tick)
+		{
+			tick();
+		}
+	}
+
+	/**
+	 * Merge gains older than the retention period, and older than anything
+	 * the chart can show, into coarser buckets. Gains are merged into new
+	 * stores in the background, which are swapped in on a later tick, so
+	 * snapshots taken before then are unaffected.
+	 */
+	public void compact()
+	{
+		if (compaction != null)
+		{
+			return;
+		}
+
+		final var keepTicks = Math.max(
+			config.retention() * ONE_MINUTE,
+			secondsToTicks(config.span()) + secondsToTicks(config.windowInterval()));
+		final var beforeTick = currentTick - keepTicks;
+		if (beforeTick <= 0)
+		{
+			return;
+		}
+
+		// pyramids can't be merged, but still count towards the limit
+		final var gainLimit = ((long) config.memoryLimit() << 20) - getPyramidBytes();
+
+		compactionSources = xpGained.clone();
+		compactionViews = new GainStore[SKILLS.length];
+		for (var i = 0; i < xpGained.length; i++)
+		{
+			if (xpGained[i] != null)
+			{
+				compactionViews[i] = xpGained[i].snapshot(null);
+			}
+		}
+
+		final var views = compactionViews;
+		compaction = CompletableFuture.supplyAsync(() -> compact(views, beforeTick, gainLimit), background);
+	}
+
+	/**
+	 * Merge gains before the tick into per-minute buckets, then into wider
+	 * buckets while the stores use more than the limit. Returns the
+	 * compacted stores, or the same view where nothing was merged.
+	 */
+	private static GainStore[] compact(GainStore[] views, int beforeTick, long gainLimit)
+	{
+		final var compacted = views.clone();
+		for (var i = 0; i < COMPACT_BUCKET_TICKS.length; i++)
+		{
+			if (i > 0 && getByteSize(compacted) <= gainLimit)
+			{
+				break;
+			}
+
+			for (var j = 0; j < compacted.length; j++)
+			{
+				if (compacted[j] != null)
+				{
+					compacted[j] = compacted[j].compact(beforeTick, COMPACT_BUCKET_TICKS[i]);
+				}
+			}
+		}
+
+		return compacted;
+	}
+
+	/**
+	 * Swap in the stores from a finished compaction, catching them up on
+	 * gains added since it started. Stores that have been replaced
+	 * meanwhile, e.g. by a reset, are left alone.
+	 */
+	private void applyCompaction()
+	{
+		if (compaction == null || !compaction.isDone())
+		{
+			return;
+		}
+
+		final var task = compaction;
+		compaction = null;
+
+		final var compacted = task.join();
+		for (var i = 0; i < xpGained.length; i++)
+		{
+			if (compacted[i] != compactionViews[i] && xpGained[i] == compactionSources[i])
+			{
+				compacted[i].addSince(xpGained[i], compactionViews[i].size());
+				xpGained[i] = compacted[i];
+			}
+		}
+
+		compactionSources = null;
+		compactionViews = null;
+	}
+
+	/**
+	 * Number of skills with gains
+	 */
+	private int getGainedSkillCount()
+	{
+		var count = 0;
+		for (var gains : xpGained)
+		{
+			count += gains != null ? 1 : 0;
+		}
+		return count;
+	}
+
+	private int getGainCount()
+	{
+		var count = 0;
+		for (var gains : xpGained)
+		{
+			count += gains != null ? gains.size() : 0;
+		}
+		return count;
+	}
+
+	private static long getByteSize(GainStore[] stores)
+	{
+		var bytes = 0L;
+		for (var gains : stores)
+		{
+			bytes += gains != null ? gains.getByteSize() : 0;
+		}
+		return bytes;
+	}
+
+	private long getPyramidBytes()
+	{
+		var bytes = 0L;
+		for (var pyramid : pyramids)
+		{
+			bytes += pyramid != null ? pyramid.getByteSize() : 0;
+		}
+		return bytes;
 	}
 
 	public void reset()
 	{
-		xpGained.clear();
-		startTicks.clear();
-		cache.clear();
+		if (journal != null)
+		{
+			journal.append(currentTick, SessionJournal.RESET);
+		}
+
+		Arrays.fill(xpGained, null);
+		Arrays.fill(pyramids, null);
+		cacheGeneration++;
 		pauses.clear();
 		logouts.clear();
+		levelUps.clear();
+		bookmarks.clear();
 		currentTick = 0;
 	}
 
 	public void clearCache()
 	{
-		cache.clear();
+		cacheGeneration++;
 	}
 
 	public void pause()
 	{
 		paused = true;
 		pauses.add(currentTick);
+
+		if (journal != null)
+		{
+			journal.append(currentTick, SessionJournal.PAUSE);
+		}
 	}
 
 	public void unpause()
 	{
 		paused = false;
+
+		if (journal != null)
+		{
+			journal.append(currentTick, SessionJournal.UNPAUSE);
+		}
 	}
 
 	public void trackLogout()
 	{
 		logouts.add(currentTick);
+
+		if (journal != null)
+		{
+			journal.append(currentTick, SessionJournal.LOGOUT);
+		}
 	}
 
+	/**
+	 * Mark the current tick, to find it again on the chart
+	 */
+	public void addBookmark()
+	{
+		bookmarks.add(currentTick);
+
+		if (journal != null)
+		{
+			journal.append(currentTick, SessionJournal.BOOKMARK);
+		}
+	}
+
+	/**
+	 * Session data for the config, as base64 encoded, compressed binary
+	 */
 	public String export()
 	{
-		return gson.newBuilder()
-			.excludeFieldsWithoutExposeAnnotation()
-			.create()
-			.toJson(this);
+		return Base64.getEncoder().encodeToString(SessionCodec.compress(encode()));
+	}
+
+	public byte[] encode()
+	{
+		return encode(capture());
+	}
+
+	/**
+	 * Capture the session with views of its gains and markers, which
+	 * don't change as tracking continues, so it can be encoded elsewhere
+	 */
+	private Session capture()
+	{
+		final var session = new Session();
+		session.currentTick = currentTick;
+		session.paused = paused;
+		pauses.snapshot(session.pauses);
+		logouts.snapshot(session.logouts);
+		bookmarks.snapshot(session.bookmarks);
+
+		for (var skill : SKILLS)
+		{
+			final var i = skill.ordinal();
+			if ((lastXpSkills & bit(skill)) != 0)
+			{
+				session.lastXp.put(skill, lastXp[i]);
+			}
+
+			if (xpGained[i] != null)
+			{
+				session.xpGained.put(skill, xpGained[i].snapshot(null));
+				session.startTicks.put(skill, startTicks[i]);
+			}
+		}
+
+		return session;
+	}
+
+	/**
+	 * Encode the session as
+	 * [current tick][paused][pauses][logouts][skill count][skills...][bookmarks?],
+	 * with markers as deltas from the previous marker, and each skill as
+	 * [name][flags][last xp?][start tick, gains?]. Bookmarks are left off
+	 * when there are none, so older versions can still read the rest.
+	 * Level-ups aren't written, as they're found again from the gains.
+	 */
+	private static byte[] encode(Session session)
+	{
+		final var event = new XPMeterEvents.Export();
+		event.begin();
+
+		final var writer = new SessionCodec.Writer();
+
+		writer.writeVarInt(session.currentTick);
+		writer.writeByte(session.paused ? 1 : 0);
+		writeMarkers(writer, session.pauses);
+		writeMarkers(writer, session.logouts);
+
+		var skillCount = 0;
+		var gainCount = 0;
+		for (var skill : SKILLS)
+		{
+			if (session.lastXp.containsKey(skill) || session.xpGained.containsKey(skill))
+			{
+				skillCount++;
+			}
+		}
+
+		writer.writeVarInt(skillCount);
+		for (var skill : SKILLS)
+		{
+			final var lastXp = session.lastXp.get(skill);
+			final var gains = session.xpGained.get(skill);
+			if (lastXp == null && gains == null)
+			{
+				continue;
+			}
+
+			writer.writeString(skill.name());
+			writer.writeByte((lastXp != null ? HAS_LAST_XP : 0) | (gains != null ? HAS_GAINS : 0));
+
+			if (lastXp != null)
+			{
+				writer.writeVarInt(lastXp);
+			}
+
+			if (gains != null)
+			{
+				writer.writeVarInt(session.startTicks.get(skill));
+				gains.write(writer);
+				gainCount += gains.size();
+			}
+		}
+
+		if (session.bookmarks.size() > 0)
+		{
+			writeMarkers(writer, session.bookmarks);
+		}
+
+		final var data = writer.toByteArray();
+
+		if (event.shouldCommit())
+		{
+			event.skillCount = session.xpGained.size();
+			event.gainCount = gainCount;
+			event.size = data.length;
+			event.commit();
+		}
+
+		return data;
+	}
+
+	private static void writeMarkers(SessionCodec.Writer writer, MarkerTrack markers)
+	{
+		writer.writeVarInt(markers.size());
+		var last = 0;
+		for (var i = 0; i < markers.size(); i++)
+		{
+			writer.writeVarInt(markers.getTick(i) - last);
+			last = markers.getTick(i);
+		}
+	}
+
+	private static void readMarkers(SessionCodec.Reader reader, MarkerTrack markers)
+	{
+		final var count = reader.readVarInt();
+		var marker = 0;
+		for (var i = 0; i < count; i++)
+		{
+			marker += reader.readVarInt();
+			markers.add(marker);
+		}
+	}
+
+	/**
+	 * Parse session data from the config, either base64 encoded binary
+	 * (compressed, or not as first exported) or a legacy JSON export.
+	 * Doesn't touch the tracker, so is safe to call from any thread.
+	 */
+	public static Session parse(String data) throws IOException
+	{
+		data = data.trim();
+		if (data.startsWith("{"))
+		{
+			return parseJson(new JsonReader(new StringReader(data)));
+		}
+
+		final var bytes = Base64.getMimeDecoder().decode(data);
+		return parse(SessionCodec.isEncoded(bytes) ? bytes : SessionCodec.decompress(bytes));
+	}
+
+	/**
+	 * Parse binary session data, or a legacy JSON export
+	 */
+	public static Session parse(byte[] data) throws IOException
+	{
+		if (SessionCodec.isEncoded(data))
+		{
+			return decode(new SessionCodec.Reader(data));
+		}
+
+		return parseJson(new JsonReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8)));
 	}
 
-	public void restore(String json)
+	public void restore(String data) throws IOException
 	{
+		restore(parse(data));
+	}
+
+	public void restore(byte[] data) throws IOException
+	{
+		restore(parse(data));
+	}
+
+	/**
+	 * Replace the tracked session with a parsed one, all at once. Anything
+	 * worked out from the session is worked out first, so if the session
+	 * doesn't add up, the tracker is left as it was.
+	 */
+	public void restore(Session session)
+	{
+		final var event = new XPMeterEvents.Restore();
+		event.begin();
+
+		final var restoredPyramids = new GainPyramid[SKILLS.length];
+		final var restoredLevelUps = new MarkerTrack();
+		for (var entry : session.xpGained.entrySet())
+		{
+			final var i = entry.getKey().ordinal();
+			restoredPyramids[i] = new GainPyramid();
+			restoredPyramids[i].seal(entry.getValue(), session.currentTick);
+
+			final var lastXp = session.lastXp.get(entry.getKey());
+			if (lastXp != null)
+			{
+				findLevelUps(i, entry.getValue(), lastXp, restoredLevelUps);
+			}
+		}
+
 		reset();
-		var data = new JsonParser().parse(json).getAsJsonObject();
 
-		for (var entry : data.get("xpGained").getAsJsonObject().entrySet())
+		currentTick = session.currentTick;
+		paused = session.paused;
+		pauses.addAll(session.pauses);
+		logouts.addAll(session.logouts);
+		bookmarks.addAll(session.bookmarks);
+		levelUps.addAll(restoredLevelUps);
+
+		for (var entry : session.lastXp.entrySet())
+		{
+			lastXp[entry.getKey().ordinal()] = entry.getValue();
+			lastXpSkills |= bit(entry.getKey());
+		}
+
+		for (var entry : session.xpGained.entrySet())
 		{
-			var jsonGains = entry.getValue().getAsJsonArray();
-			var gains = new ArrayList<XPGain>();
-			for (var jsonGain : jsonGains)
+			final var i = entry.getKey().ordinal();
+			xpGained[i] = entry.getValue();
+			startTicks[i] = session.startTicks.getOrDefault(entry.getKey(), 0);
+			pyramids[i] = restoredPyramids[i];
+		}
+
+		if (journal != null)
+		{
+			checkpoint();
+		}
+
+		if (event.shouldCommit())
+		{
+			event.skillCount = getGainedSkillCount();
+			event.gainCount = getGainCount();
+			event.sessionLength = Util.ticksToSeconds(currentTick);
+			event.commit();
+		}
+	}
+
+	/**
+	 * Mark a restored skill's level-ups, working forward through
+	 * its gains from the XP it must have started with
+	 */
+	private static void findLevelUps(int skill, GainStore gains, int lastXp, MarkerTrack levelUps)
+	{
+		var xp = (int) (lastXp - gains.getTotal());
+		for (var j = 0; j < gains.size(); j++)
+		{
+			final var level = Experience.getLevelForXp(xp);
+			xp += gains.getXp(j);
+			if (Experience.getLevelForXp(xp) > level)
 			{
-				var gain = jsonGain.getAsJsonObject();
-				gains.add(new XPGain(gain.get("tick").getAsInt(), gain.get("xp").getAsInt()));
+				levelUps.add(gains.getTick(j), skill);
 			}
-			xpGained.put(Skill.valueOf(entry.getKey()), gains);
 		}
+	}
+
+	private static Session decode(SessionCodec.Reader reader)
+	{
+		final var session = new Session();
 
-		for (var entry : data.get("lastXp").getAsJsonObject().entrySet())
+		session.currentTick = reader.readVarInt();
+		session.paused = reader.readByte() != 0;
+		readMarkers(reader, session.pauses);
+		readMarkers(reader, session.logouts);
+
+		final var skillCount = reader.readVarInt();
+		for (var i = 0; i < skillCount; i++)
 		{
-			lastXp.put(Skill.valueOf(entry.getKey()), entry.getValue().getAsInt());
+			final var skill = reader.getVersion() < 2
+				? getSkill(reader.readByte())
+				: getSkill(reader.readString());
+			final var flags = reader.readByte();
+
+			if ((flags & HAS_LAST_XP) != 0)
+			{
+				session.lastXp.put(skill, reader.readVarInt());
+			}
+
+			if ((flags & HAS_GAINS) != 0)
+			{
+				session.startTicks.put(skill, reader.readVarInt());
+				session.xpGained.put(skill, GainStore.read(reader));
+			}
 		}
 
-		for (var entry : data.get("startTicks").getAsJsonObject().entrySet())
+		if (reader.hasRemaining())
 		{
-			startTicks.put(Skill.valueOf(entry.getKey()), entry.getValue().getAsInt());
+			readMarkers(reader, session.bookmarks);
 		}
 
-		currentTick = data.get("currentTick").getAsInt();
+		return session;
+	}
+
+	/**
+	 * Read a legacy JSON export a token at a time, straight into
+	 * gain stores, rather than building the whole JSON tree first
+	 */
+	private static Session parseJson(JsonReader in) throws IOException
+	{
+		final var session = new Session();
+
+		in.beginObject();
+		while (in.hasNext())
+		{
+			switch (in.nextName())
+			{
+				case "xpGained":
+					in.beginObject();
+					while (in.hasNext())
+					{
+						final var skill = getSkill(in.nextName());
+						session.xpGained.put(skill, GainStore.read(in));
+					}
+					in.endObject();
+					break;
+				case "lastXp":
+					readSkillValues(in, session.lastXp);
+					break;
+				case "startTicks":
+					readSkillValues(in, session.startTicks);
+					break;
+				case "currentTick":
+					session.currentTick = in.nextInt();
+					break;
+				case "paused":
+					session.paused = in.nextBoolean();
+					break;
+				case "pauses":
+					readMarkers(in, session.pauses);
+					break;
+				case "logouts":
+					readMarkers(in, session.logouts);
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
 
-		paused = data.get("paused").getAsBoolean();
+		return session;
+	}
+
+	/**
+	 * Skill by the name it was written with. Names stay the same
+	 * if skills are ever reordered, unlike their ordinals.
+	 */
+	private static Skill getSkill(String name)
+	{
+		try
+		{
+			return Skill.valueOf(name);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IllegalArgumentException("Unknown skill in session data: " + name, e);
+		}
+	}
 
-		for (var logout : data.get("pauses").getAsJsonArray())
+	/**
+	 * Skill by ordinal, as version 1 of the binary format wrote them
+	 */
+	private static Skill getSkill(int ordinal)
+	{
+		if (ordinal >= SKILLS.length)
 		{
-			pauses.add(logout.getAsInt());
+			throw new IllegalArgumentException("Unknown skill in session data: " + ordinal);
 		}
 
-		for (var logout : data.get("logouts").getAsJsonArray())
+		return SKILLS[ordinal];
+	}
+
+	private static void readSkillValues(JsonReader in, Map<Skill, Integer> values) throws IOException
+	{
+		in.beginObject();
+		while (in.hasNext())
 		{
-			logouts.add(logout.getAsInt());
+			values.put(getSkill(in.nextName()), in.nextInt());
 		}
+		in.endObject();
 	}
 
-	@AllArgsConstructor
-	static class XPGain
+	private static void readMarkers(JsonReader in, MarkerTrack markers) throws IOException
 	{
-		@Expose private int tick;
-		@Expose private int xp;
+		in.beginArray();
+		while (in.hasNext())
+		{
+			markers.add(in.nextInt());
+		}
+		in.endArray();
+	}
+
+	/**
+	 * Rebuild the last session from the journal's checkpoint and
+	 * records, then keep recording to the journal
+	 */
+	public void recover(SessionJournal journal) throws IOException
+	{
+		this.journal = null;
+		reset();
+
+		final var checkpoint = journal.readCheckpoint();
+		if (checkpoint != null)
+		{
+			restore(checkpoint);
+		}
+
+		for (var i = 0; i < journal.getSize(); i++)
+		{
+			advanceTo(journal.getTick(i));
+			switch (journal.getType(i))
+			{
+				case SessionJournal.TRACK:
+					track(journal.getSkill(i), journal.getValue(i));
+					break;
+				case SessionJournal.PAUSE:
+					pause();
+					break;
+				case SessionJournal.UNPAUSE:
+					unpause();
+					break;
+				case SessionJournal.LOGOUT:
+					trackLogout();
+					break;
+				case SessionJournal.RESET:
+					reset();
+					break;
+				case SessionJournal.BOOKMARK:
+					addBookmark();
+					break;
+			}
+		}
+
+		advanceTo(journal.getCurrentTick());
+		this.journal = journal;
+	}
+
+	/**
+	 * Write a final checkpoint, and stop recording to the journal
+	 */
+	public void closeJournal()
+	{
+		if (journal == null)
+		{
+			return;
+		}
+
+		checkpointQueued = false;
+		awaitCheckpoint();
+		checkpoint();
+		awaitCheckpoint();
+
+		try
+		{
+			journal.close();
+		}
+		catch (IOException e)
+		{
+			log.warn("Failed to close session journal", e);
+		}
+
+		journal = null;
+	}
+
+	/**
+	 * Write the session as a checkpoint in the background. The session
+	 * is captured as it is now, so records appended meanwhile stay in the
+	 * journal, to be replayed on top of it.
+	 */
+	private void checkpoint()
+	{
+		if (checkpointWrite != null)
+		{
+			checkpointQueued = true;
+			return;
+		}
+
+		final var journal = this.journal;
+		final var session = capture();
+		final var generation = journal.getGeneration() + 1;
+		final var records = journal.getSize();
+
+		checkpointRecords = records;
+		checkpointWrite = CompletableFuture.supplyAsync(() ->
+		{
+			try
+			{
+				journal.writeCheckpoint(encode(session), generation, records);
+				return true;
+			}
+			catch (IOException e)
+			{
+				log.warn("Failed to write session checkpoint", e);
+				return false;
+			}
+		}, background);
+	}
+
+	/**
+	 * Once a checkpoint has been written, drop the records it covers
+	 * from the journal, then start any checkpoint queued behind it
+	 */
+	private void applyCheckpoint()
+	{
+		if (checkpointWrite == null || !checkpointWrite.isDone())
+		{
+			return;
+		}
+
+		final var written = checkpointWrite.join();
+		checkpointWrite = null;
+
+		if (written)
+		{
+			journal.applyCheckpoint(checkpointRecords);
+		}
+
+		if (checkpointQueued)
+		{
+			checkpointQueued = false;
+			checkpoint();
+		}
+	}
+
+	private void awaitCheckpoint()
+	{
+		if (checkpointWrite != null)
+		{
+			checkpointWrite.join();
+			applyCheckpoint();
+		}
+	}
+
+	/**
+	 * Session data parsed from an export or checkpoint,
+	 * ready to be swapped into the tracker
+	 */
+	public static class Session
+	{
+		private final Map<Skill, GainStore> xpGained = new EnumMap<>(Skill.class);
+		private final Map<Skill, Integer> lastXp = new EnumMap<>(Skill.class);
+		private final Map<Skill, Integer> startTicks = new EnumMap<>(Skill.class);
+		private int currentTick;
+		private boolean paused;
+		private final MarkerTrack pauses = new MarkerTrack();
+		private final MarkerTrack logouts = new MarkerTrack();
+		private final MarkerTrack bookmarks = new MarkerTrack();
+	}
+
+	/**
+	 * Tracker state and config captured at one tick. Reused between
+	 * updates, along with the views of each skill's gains.
+	 */
+	static class Snapshot
+	{
+		private int currentTick;
+
+		/**
+		 * Gains of each skill by ordinal, null if the skill has none
+		 */
+		private final GainStore[] xpGained = new GainStore[SKILLS.length];
+		private final GainStore[] gainViews = new GainStore[SKILLS.length];
+		private final GainPyramid[] pyramidViews = new GainPyramid[SKILLS.length];
+		private final int[] startTicks = new int[SKILLS.length];
+
+		/**
+		 * Enabled skills with gains, in skill order
+		 */
+		private final Skill[] trackedSkills = new Skill[SKILLS.length];
+		private int trackedCount;
+
+		private MarkerTrack pauses;
+		private MarkerTrack logouts;
+		private MarkerTrack levelUps;
+		private MarkerTrack bookmarks;
+
+		private int span;
+		private int windowInterval;
+		private int resolution;
+		private TrackingMode trackingMode;
+		private boolean disableCache;
+		private boolean disableDynamicResolution;
+		private boolean parallelAggregation;
+		private int cacheSize;
+		private int cacheGeneration;
+
+		private int maxPixels;
+
+		@VisibleForTesting
+		GainStore getGains(Skill skill)
+		{
+			return xpGained[skill.ordinal()];
+		}
+	}
+
+	/**
+	 * Histories and chart scale computed from a snapshot.
+	 * Reused between updates, so once every series has grown to fit
+	 * the chart, computing an aggregate allocates nothing.
+	 */
+	static class Aggregate
+	{
+		private final Series[] series = new Series[SKILLS.length];
+
+		/**
+		 * Tracked skills, sorted from the lowest current rate to highest
+		 */
+		private final Skill[] sortedSkills = new Skill[SKILLS.length];
+		@Getter private int skillCount;
+
+		/**
+		 * Changes when any history was computed from scratch - while it's
+		 * the same, histories only lose points off the start and gain new
+		 * ones on the end, and the points in between never change
+		 */
+		@Getter private int historyVersion;
+
+		@Getter private int maxXpPerHour;
+		@Getter private int currentTick;
+		@Getter private MarkerTrack pauses;
+		@Getter private MarkerTrack logouts;
+		@Getter private MarkerTrack levelUps;
+		@Getter private MarkerTrack bookmarks;
+		@Getter private final Performance performance = new Performance();
+
+		/**
+		 * Gains of the tracked skills by ordinal, and what's needed to work
+		 * out their rate at any tick - the views never change, so they're
+		 * safe to read from the client thread
+		 */
+		private final GainStore[] gains = new GainStore[SKILLS.length];
+		private final int[] startTicks = new int[SKILLS.length];
+		private int windowInterval;
+		private TrackingMode trackingMode;
+
+		Aggregate()
+		{
+			for (var i = 0; i < series.length; i++)
+			{
+				series[i] = new Series();
+			}
+		}
+
+		public Series getSeries(Skill skill)
+		{
+			return series[skill.ordinal()];
+		}
+
+		public Skill getSortedSkill(int index)
+		{
+			return sortedSkills[index];
+		}
+
+		/**
+		 * XP per hour of a tracked skill at exactly the tick, rather than
+		 * at the nearest point in its history. Worked out from the gain
+		 * index with a couple of binary searches.
+		 */
+		public int getXPPerHourAt(Skill skill, int tick)
+		{
+			final var i = skill.ordinal();
+			return XPTracker.getXPPerHourAt(gains[i], startTicks[i], tick, windowInterval, trackingMode);
+		}
 	}
 
 	@Getter
-	@AllArgsConstructor
+	@Setter
 	static class Performance
 	{
+		/**
+		 * Time taken by this aggregate, and percentiles over recent
+		 * aggregates, in nanoseconds
+		 */
 		private long computeTime;
+		private int computeTimes;
+		private long computeP50;
+		private long computeP95;
+		private long computeP99;
+		private long computeMax;
+
+		/**
+		 * Points in the histories, how many of those were computed for this
+		 * aggregate rather than kept from the last, and gains read to compute them
+		 */
+		private int pointCount;
+		private int newPointCount;
+		private int scannedGains;
+
 		private int cacheSize;
 		private int cacheHits;
 		private int cacheMisses;
+		private int cacheEvictions;
 		private int renderedResolution;
+		private int gainCount;
+		private long gainBytes;
+		private boolean parallel;
 	}
 }
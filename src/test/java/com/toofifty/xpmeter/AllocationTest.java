@@ -0,0 +1,109 @@
+package com.toofifty.xpmeter;
+
+import com.google.inject.Guice;
+import java.lang.management.ManagementFactory;
+import java.util.EnumSet;
+import java.util.Random;
+import net.runelite.api.Skill;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks snapshots and aggregates allocate nothing once warmed up, with
+ * a few hours of simulated gains across several skills. Each aggregate
+ * follows one update's worth of ticks, as in the plugin, so the newest
+ * points are computed - only the snapshot and aggregate are counted.
+ * Parallel aggregation is off, as fork/join tasks allocate.
+ */
+public class AllocationTest
+{
+	private static final int SESSION_TICKS = 6 * 6000;
+	private static final int ITERATIONS = 1000;
+
+	/**
+	 * Long enough for C2 to compile getAggregate - until then, flight
+	 * recorder events are allocated even while nothing is recording
+	 */
+	private static final int WARMUP_ITERATIONS = 20_000;
+	private static final int MAX_PIXELS = 600;
+
+	@Test
+	public void aggregatesWithoutAllocating()
+	{
+		final var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		final var config = new XPMeterConfig()
+		{
+			@Override
+			public int span()
+			{
+				return 3600;
+			}
+
+			@Override
+			public boolean parallelAggregation()
+			{
+				return false;
+			}
+		};
+
+		final var injector = Guice.createInjector(binder -> binder.bind(XPMeterConfig.class).toInstance(config));
+
+		final var tracker = injector.getInstance(XPTracker.class);
+		tracker.setEnabledSkills(EnumSet.allOf(Skill.class));
+
+		final var random = new Random(0);
+		final var skills = new Skill[]{Skill.ATTACK, Skill.STRENGTH, Skill.DEFENCE, Skill.HITPOINTS, Skill.PRAYER};
+		final var xp = new int[skills.length];
+		final Runnable tick = () ->
+		{
+			final var i = random.nextInt(skills.length);
+			if (random.nextInt(4) == 0)
+			{
+				xp[i] += 1 + random.nextInt(400);
+				tracker.track(skills[i], xp[i]);
+			}
+			tracker.tick();
+		};
+
+		for (var i = 0; i < SESSION_TICKS; i++)
+		{
+			tick.run();
+		}
+
+		final var updateTicks = Util.secondsToTicks(config.resolution());
+		final var snapshot = new XPTracker.Snapshot();
+		final var aggregate = new XPTracker.Aggregate();
+
+		// warm up, so arrays are sized and the JIT has settled
+		for (var i = 0; i < WARMUP_ITERATIONS; i++)
+		{
+			for (var j = 0; j < updateTicks; j++)
+			{
+				tick.run();
+			}
+			tracker.snapshot(snapshot, MAX_PIXELS);
+			tracker.getAggregate(snapshot, aggregate);
+		}
+
+		final var thread = Thread.currentThread().getId();
+
+		var allocated = 0L;
+		for (var i = 0; i < ITERATIONS; i++)
+		{
+			for (var j = 0; j < updateTicks; j++)
+			{
+				tick.run();
+			}
+
+			final var before = threads.getThreadAllocatedBytes(thread);
+			tracker.snapshot(snapshot, MAX_PIXELS);
+			tracker.getAggregate(snapshot, aggregate);
+			allocated += threads.getThreadAllocatedBytes(thread) - before;
+		}
+
+		assertEquals("bytes allocated over " + ITERATIONS + " aggregates", 0, allocated);
+	}
+}
@@ -0,0 +1,281 @@
+package com.toofifty.xpmeter;
+
+import com.google.gson.stream.JsonWriter;
+import com.google.inject.Guice;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Base64;
+import java.util.EnumSet;
+import net.runelite.api.Skill;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SessionExportTest
+{
+	private static final String LEGACY_JSON = "{"
+		+ "\"xpGained\":{"
+		+ "\"ATTACK\":[{\"tick\":10,\"xp\":40},{\"tick\":14,\"xp\":52},{\"tick\":30,\"xp\":4}],"
+		+ "\"MAGIC\":[{\"tick\":5,\"xp\":65}]},"
+		+ "\"lastXp\":{\"ATTACK\":1096,\"MAGIC\":2065,\"COOKING\":500},"
+		+ "\"startTicks\":{\"ATTACK\":2,\"MAGIC\":0},"
+		+ "\"currentTick\":40,"
+		+ "\"paused\":true,"
+		+ "\"pauses\":[20,35],"
+		+ "\"logouts\":[25],"
+		+ "\"unknownField\":{\"ignored\":[1,2,3]}"
+		+ "}";
+
+	private static XPTracker createTracker()
+	{
+		final var tracker = Guice.createInjector(binder -> binder.bind(XPMeterConfig.class).toInstance(new XPMeterConfig() {}))
+			.getInstance(XPTracker.class);
+		tracker.setEnabledSkills(EnumSet.allOf(Skill.class));
+		return tracker;
+	}
+
+	private static XPTracker generate()
+	{
+		final var tracker = createTracker();
+		new SessionGenerator(tracker, 0).generate(SessionGenerator.Activity.COMBAT, 2, () -> {});
+		return tracker;
+	}
+
+	private static GainStore getGains(XPTracker tracker, Skill skill)
+	{
+		final var snapshot = new XPTracker.Snapshot();
+		tracker.snapshot(snapshot, 600);
+		return snapshot.getGains(skill);
+	}
+
+	private static void assertSameGains(XPTracker expected, XPTracker actual)
+	{
+		for (var skill : Skill.values())
+		{
+			final var expectedGains = getGains(expected, skill);
+			final var actualGains = getGains(actual, skill);
+			if (expectedGains == null)
+			{
+				assertNull(actualGains);
+				continue;
+			}
+
+			assertEquals(skill.getName(), expectedGains.size(), actualGains.size());
+			for (var i = 0; i < expectedGains.size(); i++)
+			{
+				assertEquals(expectedGains.getTick(i), actualGains.getTick(i));
+				assertEquals(expectedGains.getXp(i), actualGains.getXp(i));
+			}
+		}
+	}
+
+	@Test
+	public void restoresLegacyJson() throws IOException
+	{
+		final var tracker = createTracker();
+		tracker.restore(LEGACY_JSON);
+
+		assertEquals(40, tracker.getCurrentTick());
+		assertEquals(true, tracker.isPaused());
+
+		final var attack = getGains(tracker, Skill.ATTACK);
+		assertEquals(3, attack.size());
+		assertEquals(14, attack.getTick(1));
+		assertEquals(92, attack.totalAt(20));
+		assertEquals(65, getGains(tracker, Skill.MAGIC).getTotal());
+		assertNull(getGains(tracker, Skill.COOKING));
+
+		final var aggregate = tracker.getAggregate(600);
+		assertEquals(2, aggregate.getPauses().size());
+		assertEquals(35, aggregate.getPauses().getTick(1));
+		assertEquals(25, aggregate.getLogouts().getTick(0));
+
+		// and the same session once it's been through the binary format
+		final var restored = createTracker();
+		restored.restore(tracker.encode());
+		assertArrayEquals(tracker.encode(), restored.encode());
+		assertSameGains(tracker, restored);
+	}
+
+	@Test
+	public void roundTripsBinary() throws IOException
+	{
+		final var tracker = generate();
+		final var encoded = tracker.encode();
+
+		final var restored = createTracker();
+		restored.restore(encoded);
+
+		assertEquals(tracker.getCurrentTick(), restored.getCurrentTick());
+		assertSameGains(tracker, restored);
+		assertArrayEquals(encoded, restored.encode());
+	}
+
+	@Test
+	public void roundTripsBase64() throws IOException
+	{
+		final var tracker = generate();
+		final var exported = tracker.export();
+
+		final var restored = createTracker();
+		restored.restore(exported);
+
+		assertSameGains(tracker, restored);
+		assertEquals(exported, restored.export());
+	}
+
+	@Test
+	public void restoresUncompressedBase64() throws IOException
+	{
+		final var tracker = generate();
+
+		// as exported before the binary data was compressed
+		final var restored = createTracker();
+		restored.restore(Base64.getEncoder().encodeToString(tracker.encode()));
+
+		assertSameGains(tracker, restored);
+	}
+
+	@Test
+	public void exportsTenTimesSmallerThanLegacyJson() throws IOException
+	{
+		final var tracker = generate();
+		final var json = legacyJson(tracker);
+
+		final var legacy = createTracker();
+		legacy.restore(json);
+		assertSameGains(tracker, legacy);
+
+		final var exported = tracker.export();
+		assertTrue("exported " + exported.length() + " chars, legacy JSON " + json.length(),
+			exported.length() * 10 <= json.length());
+	}
+
+	@Test
+	public void roundTripsBookmarks() throws IOException
+	{
+		final var tracker = generate();
+		tracker.addBookmark();
+		final var bookmarkTick = tracker.getCurrentTick();
+		tracker.tick();
+		tracker.addBookmark();
+
+		final var restored = createTracker();
+		restored.restore(tracker.encode());
+
+		final var bookmarks = restored.getAggregate(600).getBookmarks();
+		assertEquals(2, bookmarks.size());
+		assertEquals(bookmarkTick, bookmarks.getTick(0));
+		assertEquals(bookmarkTick + 1, bookmarks.getTick(1));
+	}
+
+	@Test
+	public void failedRestoreKeepsSession() throws IOException
+	{
+		final var tracker = generate();
+		final var encoded = tracker.encode();
+
+		// more XP gained than the skill ended up with
+		final var session = XPTracker.parse("{"
+			+ "\"xpGained\":{\"ATTACK\":[{\"tick\":10,\"xp\":5000}]},"
+			+ "\"lastXp\":{\"ATTACK\":100},"
+			+ "\"currentTick\":40"
+			+ "}");
+
+		try
+		{
+			tracker.restore(session);
+			fail("restored a session with negative starting XP");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertArrayEquals(encoded, tracker.encode());
+		}
+	}
+
+	@Test
+	public void readsVersionOneOrdinals() throws IOException
+	{
+		final var restored = createTracker();
+		restored.restore(versionOne(Skill.MAGIC.ordinal()));
+
+		assertEquals(100, restored.getCurrentTick());
+		assertEquals(50, getGains(restored, Skill.MAGIC).getTick(0));
+		assertEquals(65, getGains(restored, Skill.MAGIC).getTotal());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownSkillOrdinal() throws IOException
+	{
+		XPTracker.parse(versionOne(200));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownSkillName() throws IOException
+	{
+		XPTracker.parse("{\"lastXp\":{\"NOT_A_SKILL\":1}}");
+	}
+
+	/**
+	 * A session's gains, as the legacy JSON export wrote them
+	 */
+	private static String legacyJson(XPTracker tracker) throws IOException
+	{
+		final var out = new StringWriter();
+		final var writer = new JsonWriter(out);
+
+		writer.beginObject();
+		writer.name("xpGained").beginObject();
+		for (var skill : Skill.values())
+		{
+			final var gains = getGains(tracker, skill);
+			if (gains == null)
+			{
+				continue;
+			}
+
+			writer.name(skill.name()).beginArray();
+			for (var i = 0; i < gains.size(); i++)
+			{
+				writer.beginObject();
+				writer.name("tick").value(gains.getTick(i));
+				writer.name("xp").value(gains.getXp(i));
+				writer.endObject();
+			}
+			writer.endArray();
+		}
+		writer.endObject();
+		writer.name("currentTick").value(tracker.getCurrentTick());
+		writer.endObject();
+
+		return out.toString();
+	}
+
+	/**
+	 * A session with one gain, as the first binary format wrote it,
+	 * with the skill by its ordinal
+	 */
+	private static byte[] versionOne(int ordinal)
+	{
+		final var writer = new SessionCodec.Writer();
+		writer.writeVarInt(100);
+		writer.writeByte(0);
+		writer.writeVarInt(0);
+		writer.writeVarInt(0);
+		writer.writeVarInt(1);
+		writer.writeByte(ordinal);
+		writer.writeByte(3);
+		writer.writeVarInt(2065);
+		writer.writeVarInt(0);
+		writer.writeVarInt(1);
+		writer.writeVarInt(50);
+		writer.writeSignedVarInt(65);
+
+		final var data = writer.toByteArray();
+		data[3] = 1;
+		return data;
+	}
+}
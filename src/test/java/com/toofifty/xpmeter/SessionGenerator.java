@@ -0,0 +1,180 @@
+package com.toofifty.xpmeter;
+
+import java.util.Random;
+import net.runelite.api.Skill;
+
+/**
+ * Drives a tracker through a synthetic session the way the plugin would -
+ * XP drops arrive as absolute XP, and ticks only advance while logged in
+ * and unpaused. Sessions include logout and pause gaps every so often.
+ */
+public class SessionGenerator
+{
+	private static final int ONE_MINUTE = 100;
+	private static final int ONE_HOUR = 60 * ONE_MINUTE;
+
+	public enum Activity
+	{
+		/**
+		 * High alching, 65 Magic XP every 5 ticks with
+		 * a short trip to the bank every half hour
+		 */
+		ALCHING,
+
+		/**
+		 * Melee, with varying hits every 4 ticks, gaps between
+		 * kills and bank trips
+		 */
+		COMBAT,
+
+		/**
+		 * Yews at an irregular pace, dropping a full inventory every
+		 * 28 logs, with Forestry events paying out in bursts
+		 */
+		WOODCUTTING,
+	}
+
+	private final XPTracker tracker;
+	private final Random random;
+	private final int[] xp = new int[Skill.values().length];
+
+	private int tick = 0;
+
+	public SessionGenerator(XPTracker tracker, long seed)
+	{
+		this.tracker = tracker;
+		this.random = new Random(seed);
+
+		for (var skill : Skill.values())
+		{
+			xp[skill.ordinal()] = 13_034_431;
+			tracker.track(skill, xp[skill.ordinal()]);
+		}
+	}
+
+	/**
+	 * Simulate a session lasting the given number of hours, including
+	 * time spent logged out or paused. The listener is called after
+	 * every tick, as the plugin's game tick handler would be.
+	 */
+	public void generate(Activity activity, int hours, Runnable onTick)
+	{
+		final var end = hours * ONE_HOUR;
+		var nextGap = ONE_HOUR / 2 + random.nextInt(ONE_HOUR);
+		var idleUntil = 0;
+		var logs = 0;
+		var forestryUntil = 0;
+		var nextForestry = 5 * ONE_MINUTE + random.nextInt(10 * ONE_MINUTE);
+
+		for (; tick < end; tick++)
+		{
+			if (tick == nextGap)
+			{
+				gap();
+				nextGap = tick + ONE_HOUR / 2 + random.nextInt(ONE_HOUR);
+				continue;
+			}
+
+			if (tick >= idleUntil)
+			{
+				switch (activity)
+				{
+					case ALCHING:
+						if (tick % 5 == 0)
+						{
+							gain(Skill.MAGIC, 65);
+						}
+
+						if (tick % (30 * ONE_MINUTE) == 0)
+						{
+							idleUntil = tick + 30 + random.nextInt(30);
+						}
+						break;
+
+					case COMBAT:
+						if (tick % 4 == 0 && random.nextInt(10) < 7)
+						{
+							final var damage = 1 + random.nextInt(random.nextInt(20) == 0 ? 60 : 30);
+							gain(Skill.STRENGTH, damage * 4);
+							gain(Skill.HITPOINTS, damage * 4 / 3);
+						}
+
+						if (random.nextInt(40) == 0)
+						{
+							// kill, waiting for the next target
+							idleUntil = tick + 2 + random.nextInt(10);
+						}
+						else if (random.nextInt(15 * ONE_MINUTE) == 0)
+						{
+							idleUntil = tick + 100 + random.nextInt(100);
+						}
+						break;
+
+					case WOODCUTTING:
+						if (random.nextInt(6) == 0)
+						{
+							gain(Skill.WOODCUTTING, 175);
+							if (++logs == 28)
+							{
+								logs = 0;
+								idleUntil = tick + 20 + random.nextInt(40);
+							}
+						}
+
+						if (forestryUntil == 0 && tick >= nextForestry)
+						{
+							forestryUntil = tick + 100 + random.nextInt(100);
+						}
+
+						if (forestryUntil != 0 && tick < forestryUntil && random.nextInt(8) == 0)
+						{
+							gain(Skill.WOODCUTTING, 50 + random.nextInt(250));
+						}
+
+						if (forestryUntil != 0 && tick >= forestryUntil)
+						{
+							// event reward
+							gain(Skill.WOODCUTTING, 5_000 + random.nextInt(25_000));
+							forestryUntil = 0;
+							nextForestry = tick + 5 * ONE_MINUTE + random.nextInt(10 * ONE_MINUTE);
+						}
+						break;
+				}
+			}
+
+			tracker.tick();
+			onTick.run();
+		}
+	}
+
+	private void gain(Skill skill, int amount)
+	{
+		xp[skill.ordinal()] += amount;
+		tracker.track(skill, xp[skill.ordinal()]);
+	}
+
+	/**
+	 * Log out or pause for a few minutes. The tracker doesn't tick
+	 * meanwhile, though the time still counts towards the session.
+	 */
+	private void gap()
+	{
+		tick += ONE_MINUTE + random.nextInt(10 * ONE_MINUTE);
+
+		if (random.nextBoolean())
+		{
+			tracker.trackLogout();
+
+			// stats are sent again on login
+			for (var skill : Skill.values())
+			{
+				tracker.track(skill, xp[skill.ordinal()]);
+			}
+		}
+		else
+		{
+			tracker.pause();
+			tracker.unpause();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.toofifty.xpmeter;
+
+import com.google.inject.Guice;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import net.runelite.api.Skill;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SessionJournalTest
+{
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws IOException
+	{
+		directory = Files.createTempDirectory("xp-meter");
+	}
+
+	@After
+	public void deleteDirectory() throws IOException
+	{
+		try (Stream<Path> paths = Files.walk(directory))
+		{
+			for (var path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+			{
+				Files.delete(path);
+			}
+		}
+	}
+
+	private static XPTracker createTracker()
+	{
+		// compaction finishes in the background at no particular tick,
+		// so keep every gain to compare sessions exactly
+		final var config = new XPMeterConfig()
+		{
+			@Override
+			public int retention()
+			{
+				return 10_000;
+			}
+		};
+
+		return Guice.createInjector(binder -> binder.bind(XPMeterConfig.class).toInstance(config))
+			.getInstance(XPTracker.class);
+	}
+
+	@Test
+	public void recoversSessionAcrossCheckpoints() throws IOException
+	{
+		final var tracker = createTracker();
+		tracker.recover(SessionJournal.open(directory));
+
+		// long enough for a couple of hourly checkpoints, written in the background
+		new SessionGenerator(tracker, 0).generate(SessionGenerator.Activity.COMBAT, 3, () -> {});
+		tracker.addBookmark();
+		final var session = tracker.encode();
+		tracker.closeJournal();
+
+		final var recovered = createTracker();
+		recovered.recover(SessionJournal.open(directory));
+		assertArrayEquals(session, recovered.encode());
+		recovered.closeJournal();
+	}
+
+	@Test
+	public void dropsRecordsCoveredByUnappliedCheckpoint() throws IOException
+	{
+		try (var journal = SessionJournal.open(directory))
+		{
+			for (var tick = 1; tick <= 5; tick++)
+			{
+				journal.track(tick, Skill.ATTACK, tick * 100);
+			}
+
+			// the client stops after writing the checkpoint, but before applying it
+			journal.writeCheckpoint(new byte[]{1, 2, 3}, journal.getGeneration() + 1, 3);
+		}
+
+		try (var journal = SessionJournal.open(directory))
+		{
+			assertArrayEquals(new byte[]{1, 2, 3}, journal.readCheckpoint());
+			assertEquals(1, journal.getGeneration());
+			assertEquals(2, journal.getSize());
+			assertEquals(4, journal.getTick(0));
+			assertEquals(500, journal.getValue(1));
+		}
+	}
+}
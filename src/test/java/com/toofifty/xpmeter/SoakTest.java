@@ -0,0 +1,107 @@
+package com.toofifty.xpmeter;
+
+import com.google.inject.Guice;
+import java.util.Arrays;
+import java.util.EnumSet;
+import net.runelite.api.Skill;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plays through long synthetic sessions, aggregating as often as the
+ * plugin would, and fails if the 99th percentile aggregate takes longer
+ * than the budget - a stray GC pause shouldn't fail the build.
+ * 24 hour sessions only run with -Dsoak.long=true, to keep the build quick.
+ * The budget defaults to 16ms, and can be changed with -Dsoak.budget.
+ */
+public class SoakTest
+{
+	private static final int ONE_HOUR = 6000;
+	private static final int MAX_PIXELS = 600;
+
+	/**
+	 * Aggregates ignored while the JIT warms up
+	 */
+	private static final int WARMUP_UPDATES = 200;
+
+	private static final int[] SPANS = {180, 3600, 43200};
+
+	private static final int BUDGET = Integer.getInteger("soak.budget", 16);
+
+	@Test
+	public void oneHourSessions()
+	{
+		soak(1);
+	}
+
+	@Test
+	public void sixHourSessions()
+	{
+		soak(6);
+	}
+
+	@Test
+	public void dayLongSessions()
+	{
+		Assume.assumeTrue(Boolean.getBoolean("soak.long"));
+		soak(24);
+	}
+
+	private static void soak(int hours)
+	{
+		for (var activity : SessionGenerator.Activity.values())
+		{
+			for (var span : SPANS)
+			{
+				final var computeTimes = soak(activity, hours, span);
+				Arrays.sort(computeTimes);
+
+				final var p99 = computeTimes[(int) Math.ceil(computeTimes.length * 0.99) - 1];
+				assertTrue(activity + " " + hours + "h span " + span + "s: 99th percentile aggregate took "
+						+ p99 + "ms (slowest " + computeTimes[computeTimes.length - 1] + "ms), over the "
+						+ BUDGET + "ms budget",
+					p99 <= BUDGET);
+			}
+		}
+	}
+
+	/**
+	 * @return how long each aggregate took after warming up, in milliseconds
+	 */
+	private static long[] soak(SessionGenerator.Activity activity, int hours, int span)
+	{
+		final var config = new XPMeterConfig()
+		{
+			@Override
+			public int span()
+			{
+				return span;
+			}
+		};
+
+		final var tracker = Guice.createInjector(binder -> binder.bind(XPMeterConfig.class).toInstance(config))
+			.getInstance(XPTracker.class);
+		tracker.setEnabledSkills(EnumSet.allOf(Skill.class));
+
+		final var snapshot = new XPTracker.Snapshot();
+		final var aggregate = new XPTracker.Aggregate();
+		final var updateTicks = Util.secondsToTicks(config.resolution());
+		final var computeTimes = new long[hours * ONE_HOUR / updateTicks];
+		final var updates = new int[1];
+
+		new SessionGenerator(tracker, hours).generate(activity, hours, () ->
+		{
+			if (tracker.getCurrentTick() % updateTicks != 0)
+			{
+				return;
+			}
+
+			tracker.snapshot(snapshot, MAX_PIXELS);
+			tracker.getAggregate(snapshot, aggregate);
+			computeTimes[updates[0]++] = aggregate.getPerformance().getComputeTime() / 1_000_000;
+		});
+
+		return Arrays.copyOfRange(computeTimes, WARMUP_UPDATES, updates[0]);
+	}
+}
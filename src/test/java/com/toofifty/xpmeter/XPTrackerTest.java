@@ -0,0 +1,198 @@
+package com.toofifty.xpmeter;
+
+import com.google.inject.Guice;
+import java.util.EnumSet;
+import net.runelite.api.Skill;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class XPTrackerTest
+{
+	private static final int SPAN = 3600;
+	private static final int MAX_PIXELS = 600;
+
+	private static XPTracker createTracker(XPMeterConfig config)
+	{
+		final var tracker = Guice.createInjector(binder -> binder.bind(XPMeterConfig.class).toInstance(config))
+			.getInstance(XPTracker.class);
+		tracker.setEnabledSkills(EnumSet.allOf(Skill.class));
+		return tracker;
+	}
+
+	private static XPTracker generate(SessionGenerator.Activity activity, int hours)
+	{
+		final var tracker = createTracker(new XPMeterConfig()
+		{
+			@Override
+			public int span()
+			{
+				return SPAN;
+			}
+		});
+
+		new SessionGenerator(tracker, 0).generate(activity, hours, () -> {});
+		return tracker;
+	}
+
+	@Test
+	public void windowHistoryMatchesPerPointRates()
+	{
+		final var tracker = generate(SessionGenerator.Activity.WOODCUTTING, 2);
+		final var snapshot = new XPTracker.Snapshot();
+		tracker.snapshot(snapshot, 600);
+
+		final var gains = snapshot.getGains(Skill.WOODCUTTING);
+		final var currentTick = tracker.getCurrentTick();
+		final var startTick = currentTick - Util.secondsToTicks(SPAN);
+
+		for (var resolution : new int[]{1, 6, 15, 60})
+		{
+			for (var windowInterval : new int[]{6, 30, 300, 3600})
+			{
+				final var step = Util.secondsToTicks(resolution);
+				final var interval = Util.secondsToTicks(windowInterval);
+				final var history = new Series();
+				XPTracker.getWindowHistory(history, gains, startTick, currentTick, step, interval);
+
+				assertEquals((currentTick - startTick + step - 1) / step, history.size());
+				for (var i = 0; i < history.size(); i++)
+				{
+					final var tick = history.getTick(i);
+					assertEquals(startTick + i * step, tick);
+					assertEquals("resolution " + resolution + "s, window " + windowInterval + "s, tick " + tick,
+						tracker.getXPPerHourAt(snapshot, null, Skill.WOODCUTTING, tick, windowInterval, TrackingMode.SLIDING_WINDOW),
+						history.getRate(i));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void incrementalHistoriesMatchFullRecompute()
+	{
+		// span, resolution, dynamic resolution
+		final var charts = new int[][]{{180, 1, 1}, {3600, 5, 1}, {3600, 1, 0}, {43200, 5, 1}};
+		for (var mode : TrackingMode.values())
+		{
+			for (var chart : charts)
+			{
+				assertIncrementalMatchesFull(mode, chart[0], chart[1], chart[2] == 0);
+			}
+		}
+	}
+
+	@Test
+	public void aggregatesNewSkillBeforeNextTick()
+	{
+		// wide enough to read sliding windows from the pyramids
+		final var tracker = createTracker(new XPMeterConfig()
+		{
+			@Override
+			public int span()
+			{
+				return 43200;
+			}
+		});
+
+		tracker.track(Skill.MAGIC, 0);
+		for (var tick = 0; tick < 5000; tick++)
+		{
+			tracker.tick();
+		}
+
+		// the skill's first gain, aggregated before a tick seals its pyramid
+		tracker.track(Skill.MAGIC, 1000);
+		final var snapshot = new XPTracker.Snapshot();
+		final var aggregate = new XPTracker.Aggregate();
+		tracker.snapshot(snapshot, MAX_PIXELS);
+		tracker.getAggregate(snapshot, aggregate);
+
+		final var history = aggregate.getSeries(Skill.MAGIC);
+		assertTrue(history.size() > 0);
+		for (var i = 0; i < history.size(); i++)
+		{
+			assertEquals(0, history.getRate(i));
+		}
+	}
+
+	/**
+	 * Update the tracker's histories at the plugin's cadence through a
+	 * session, and check them against histories computed from scratch
+	 */
+	private static void assertIncrementalMatchesFull(TrackingMode mode, int span, int resolution, boolean disableDynamicResolution)
+	{
+		final var tracker = createTracker(new XPMeterConfig()
+		{
+			@Override
+			public int span()
+			{
+				return span;
+			}
+
+			@Override
+			public int resolution()
+			{
+				return resolution;
+			}
+
+			@Override
+			public TrackingMode trackingMode()
+			{
+				return mode;
+			}
+
+			@Override
+			public boolean disableDynamicResolution()
+			{
+				return disableDynamicResolution;
+			}
+
+			@Override
+			public boolean parallelAggregation()
+			{
+				return false;
+			}
+		});
+
+		final var snapshot = new XPTracker.Snapshot();
+		final var aggregate = new XPTracker.Aggregate();
+		final var full = new Series();
+		final var step = XPTracker.getResolution(resolution, span, MAX_PIXELS, disableDynamicResolution);
+		final var updateTicks = Util.secondsToTicks(resolution);
+		final var updates = new int[1];
+
+		new SessionGenerator(tracker, 0).generate(SessionGenerator.Activity.COMBAT, 2, () ->
+		{
+			if (tracker.getCurrentTick() % updateTicks != 0)
+			{
+				return;
+			}
+
+			tracker.snapshot(snapshot, MAX_PIXELS);
+			tracker.getAggregate(snapshot, aggregate);
+
+			// recomputing everything is slow on the widest charts
+			if (updates[0]++ % 20 != 0)
+			{
+				return;
+			}
+
+			for (var i = 0; i < aggregate.getSkillCount(); i++)
+			{
+				final var skill = aggregate.getSortedSkill(i);
+				final var incremental = aggregate.getSeries(skill);
+				tracker.getHistory(snapshot, null, skill, step, full);
+
+				final var message = mode + ", span " + span + "s, resolution " + resolution + "s, "
+					+ skill + " at tick " + tracker.getCurrentTick();
+				assertEquals(message, full.size(), incremental.size());
+				for (var j = 0; j < full.size(); j++)
+				{
+					assertEquals(message, full.getTick(j), incremental.getTick(j));
+					assertEquals(message, full.getRate(j), incremental.getRate(j));
+				}
+			}
+		});
+	}
+}